@@ -0,0 +1,29 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of {@code benchmarks.jar}. Accepts the usual JMH command line (benchmark regexp, -p, -f ...)
+ * and always adds the GC profiler and a JSON result file, {@code jmh-result.json} unless
+ * {@code -Dbenchmarks.result=<path>} is given, so runs of two commits can be diffed.
+ */
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("benchmarks.result", "jmh-result.json"))
+                .build();
+        new Runner(options).run();
+    }
+}
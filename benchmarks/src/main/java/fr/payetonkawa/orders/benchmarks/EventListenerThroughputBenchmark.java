@@ -0,0 +1,115 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.config.MessageDedupProperties;
+import fr.payetonkawa.orders.event.EventListener;
+import fr.payetonkawa.orders.event.MessageDeduplicator;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.StockEventDecoder;
+import fr.payetonkawa.orders.service.ClientOrderStatsService;
+import fr.payetonkawa.orders.service.ClientOrdersCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.cache.support.NoOpCacheManager;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains a burst of {@code product.stock.*} events from a stub broker (pre-built AMQP messages)
+ * one at a time and in batches. The database is stubbed too, {@link Statements} reports how many
+ * statements each mode would send to Postgres.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventListenerThroughputBenchmark {
+
+    private static final int BURST = 1_000;
+
+    @Param({"10", "100", "250"})
+    public int batchSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private StubOrderRepository stub;
+    private EventListener listener;
+    private List<Message> burst;
+
+    @Setup
+    public void setUp() throws Exception {
+        stub = new StubOrderRepository();
+        // the burst carries no message or correlation ids, so deduplication never reaches the database;
+        // the work still runs through the transaction template, stubbed to call it in place
+        MessageDeduplicator deduplicator = new MessageDeduplicator(null, new InPlaceTransactionTemplate(),
+                new MessageDedupProperties(100_000, 0.01, Duration.ofDays(7)));
+        // no product.stock.depleted nor malformed message in the burst, the depletion service and the recoverer
+        // are never reached
+        listener = new EventListener(stub.repository(), new StockEventDecoder(),
+                new ClientOrdersCache(new NoOpCacheManager()), new ClientOrderStatsService(stub.statsRepository()),
+                deduplicator, null, null, new SimpleMeterRegistry());
+        burst = new ArrayList<>(BURST);
+        for (int i = 0; i < BURST; i++) {
+            String routingKey = i % 10 == 0 ? "product.stock.insufficient" : "product.stock.confirmed";
+            byte[] body = objectMapper.writeValueAsBytes(ExchangeMessage.builder()
+                    .routingKey(routingKey)
+                    .type(routingKey)
+                    .payload(Map.of("orderId", (long) i, "items", List.of(Map.of("itemId", "item-" + i, "quantity", 2))))
+                    .build());
+            MessageProperties properties = new MessageProperties();
+            properties.setReceivedRoutingKey(routingKey);
+            burst.add(new Message(body, properties));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void oneAtATime(Statements statements) throws Exception {
+        long before = stub.statements();
+        for (Message message : burst) {
+            listener.handleEvent(message);
+        }
+        statements.statements += stub.statements() - before;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public void batched(Statements statements, Blackhole blackhole) {
+        long before = stub.statements();
+        for (int from = 0; from < BURST; from += batchSize) {
+            List<Message> batch = burst.subList(from, Math.min(from + batchSize, BURST));
+            listener.handleBatch(batch);
+            blackhole.consume(batch);
+        }
+        statements.statements += stub.statements() - before;
+    }
+
+    /** Reported next to the throughput as SQL statements issued per second. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Statements {
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            statements = 0;
+        }
+    }
+
+    private static final class InPlaceTransactionTemplate extends TransactionTemplate {
+        @Override
+        public <T> T execute(TransactionCallback<T> action) {
+            return action.doInTransaction(null);
+        }
+    }
+}
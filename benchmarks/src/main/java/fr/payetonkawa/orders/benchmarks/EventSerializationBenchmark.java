@@ -0,0 +1,60 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import fr.payetonkawa.orders.config.OutboxProperties;
+import fr.payetonkawa.orders.event.EventPublisher;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.OrderCreated;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wire serialization of an {@code order.created} message by the publisher: typed payload record vs the same
+ * content as nested maps.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EventSerializationBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int items;
+
+    private EventPublisher eventPublisher;
+    private ExchangeMessage typed;
+    private ExchangeMessage maps;
+
+    @Setup
+    public void setUp() {
+        // serialization never touches the broker
+        eventPublisher = new EventPublisher(null,
+                new OutboxProperties(200, Duration.ofSeconds(5), Duration.ofHours(24)), new SimpleMeterRegistry());
+        typed = ExchangeMessage.builder()
+                .payload(new OrderCreated(42L, "client-42", OrderLine.of(Fixtures.items(items))))
+                .build();
+        List<Map<String, Object>> lines = Fixtures.items(items).stream()
+                .map(item -> Map.<String, Object>of("itemId", item.getItemId(), "quantity", item.getQuantity()))
+                .toList();
+        maps = ExchangeMessage.builder()
+                .payload(Map.of("orderId", 42L, "clientId", "client-42", "items", lines))
+                .build();
+    }
+
+    @Benchmark
+    public byte[] typedPayload() {
+        return eventPublisher.serialize("order.created", typed);
+    }
+
+    @Benchmark
+    public byte[] mapPayload() {
+        return eventPublisher.serialize("order.created", maps);
+    }
+}
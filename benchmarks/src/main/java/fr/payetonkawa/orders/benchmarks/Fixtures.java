@@ -0,0 +1,59 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Deterministic orders shared by the benchmark suites. */
+public final class Fixtures {
+
+    private Fixtures() {
+    }
+
+    public static Order order(long id, int itemCount) {
+        Order order = new Order();
+        order.setId(id);
+        order.setClientId("client-" + (id % 100));
+        order.setCreatedAt(new Timestamp(1_700_000_000_000L + id));
+        order.setStatus("PENDING");
+        order.setItems(items(itemCount));
+        return order;
+    }
+
+    public static List<Order> orders(int orderCount, int itemCount) {
+        List<Order> orders = new ArrayList<>(orderCount);
+        for (int i = 0; i < orderCount; i++) {
+            orders.add(order(i, itemCount));
+        }
+        return orders;
+    }
+
+    public static List<OrderItem> items(int itemCount) {
+        List<OrderItem> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            OrderItem item = new OrderItem();
+            item.setId((long) i);
+            item.setItemId("item-" + i);
+            item.setQuantity(1 + i % 5);
+            item.setUnitPriceMinor(999 + 100L * i);
+            items.add(item);
+        }
+        return items;
+    }
+
+    public static List<OrderItemDto> itemDtos(int itemCount) {
+        List<OrderItemDto> dtos = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) {
+            OrderItemDto dto = new OrderItemDto();
+            dto.setItemId("item-" + i);
+            dto.setQuantity(1 + i % 5);
+            dto.setUnitPriceMinor(999 + 100L * i);
+            dtos.add(dto);
+        }
+        return dtos;
+    }
+}
@@ -0,0 +1,58 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Entity/DTO mapping done on every read and write of an order.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderMappingBenchmark {
+
+    private static final int HISTORY_SIZE = 50;
+
+    @Param({"1", "10", "100", "1000"})
+    public int items;
+
+    private Order order;
+    private List<Order> history;
+    private List<OrderItemDto> itemDtos;
+
+    @Setup
+    public void setUp() {
+        order = Fixtures.order(1L, items);
+        history = Fixtures.orders(HISTORY_SIZE, items);
+        itemDtos = Fixtures.itemDtos(items);
+    }
+
+    @Benchmark
+    public OrderDto orderFromEntity() {
+        return OrderDto.fromEntity(order);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HISTORY_SIZE)
+    public List<OrderDto> ordersFromEntities() {
+        return OrderDto.fromEntities(history);
+    }
+
+    @Benchmark
+    public void itemsToEntity(Blackhole blackhole) {
+        for (OrderItemDto dto : itemDtos) {
+            OrderItem item = dto.toEntity();
+            blackhole.consume(item);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import fr.payetonkawa.orders.entity.OrderItem;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Event payload building from order lines: the typed {@link OrderLine} records vs the previous map per line.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OrderPayloadBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int items;
+
+    private List<OrderItem> orderItems;
+
+    @Setup
+    public void setUp() {
+        orderItems = Fixtures.items(items);
+    }
+
+    @Benchmark
+    public List<OrderLine> orderLines() {
+        return OrderLine.of(orderItems);
+    }
+
+    @Benchmark
+    public List<Map<String, Object>> itemMaps() {
+        return orderItems.stream().map(item -> {
+            Map<String, Object> map = new HashMap<>();
+            map.put("itemId", item.getItemId());
+            map.put("quantity", item.getQuantity());
+            return map;
+        }).toList();
+    }
+}
@@ -0,0 +1,63 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.StockEventDecoder;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of a {@code product.stock.*} body into the order id. Compare {@code gc.alloc.rate.norm}
+ * (bytes allocated per message) between the two paths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockEventDecodingBenchmark {
+
+    /** Number of item lines the inventory service echoes back in the payload. */
+    @Param({"1", "20", "200"})
+    public int items;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StockEventDecoder decoder = new StockEventDecoder();
+    private byte[] body;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Map<String, Object>> lines = new ArrayList<>(items);
+        for (int i = 0; i < items; i++) {
+            lines.add(Map.of("itemId", "item-" + i, "quantity", i + 1));
+        }
+        body = objectMapper.writeValueAsBytes(ExchangeMessage.builder()
+                .exchangeId("global.events")
+                .routingKey("product.stock.confirmed")
+                .type("product.stock.confirmed")
+                .correlationId("c0ffee")
+                .payload(Map.of("orderId", 123456L, "items", lines))
+                .build());
+    }
+
+    /** Previous listener path: String body, full ExchangeMessage tree, then a Map copy of the payload. */
+    @Benchmark
+    public long treeAndConvertValue() throws Exception {
+        String raw = new String(body, StandardCharsets.UTF_8);
+        ExchangeMessage event = objectMapper.readValue(raw, ExchangeMessage.class);
+        Map<String, Object> payload = objectMapper.convertValue(event.getPayload(), new TypeReference<>() {});
+        return Long.parseLong(payload.get("orderId").toString());
+    }
+
+    @Benchmark
+    public long streamingDecoder() throws Exception {
+        return decoder.decode(body).orderId();
+    }
+}
@@ -0,0 +1,95 @@
+package fr.payetonkawa.orders.benchmarks;
+
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.repository.ClientOrderStatsRepository;
+import fr.payetonkawa.orders.repository.OrderRepository;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-memory stand-in for the database side of {@link OrderRepository}: status writes succeed
+ * and are counted as statements, as are the owner lookups that follow them and the row locks that precede
+ * batch writes, which find every order PENDING. The {@link ClientOrderStatsRepository} upserts are counted too.
+ * Anything else is unsupported.
+ */
+public final class StubOrderRepository {
+
+    private long statements;
+    private long rows;
+
+    private final OrderRepository proxy = (OrderRepository) Proxy.newProxyInstance(
+            OrderRepository.class.getClassLoader(),
+            new Class<?>[]{OrderRepository.class},
+            (instance, method, args) -> switch (method.getName()) {
+                case "updateStatus" -> {
+                    statements++;
+                    rows++;
+                    yield 1;
+                }
+                case "updateStatuses" -> {
+                    int size = ((Map<?, ?>) args[0]).size();
+                    statements++;
+                    rows += size;
+                    yield size;
+                }
+                case "findOwnersByIdIn" -> {
+                    statements++;
+                    yield List.of();
+                }
+                case "findAndLockByIdIn" -> {
+                    statements++;
+                    yield pendingOrders((Collection<?>) args[0]);
+                }
+                case "hashCode" -> System.identityHashCode(instance);
+                case "equals" -> instance == args[0];
+                case "toString" -> "StubOrderRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    private final ClientOrderStatsRepository statsProxy = (ClientOrderStatsRepository) Proxy.newProxyInstance(
+            ClientOrderStatsRepository.class.getClassLoader(),
+            new Class<?>[]{ClientOrderStatsRepository.class},
+            (instance, method, args) -> switch (method.getName()) {
+                case "applyDeltas" -> {
+                    statements++;
+                    yield null;
+                }
+                case "hashCode" -> System.identityHashCode(instance);
+                case "equals" -> instance == args[0];
+                case "toString" -> "StubClientOrderStatsRepository";
+                default -> throw new UnsupportedOperationException(method.getName());
+            });
+
+    private static List<Order> pendingOrders(Collection<?> ids) {
+        List<Order> orders = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            Order order = new Order();
+            order.setId((Long) id);
+            order.setClientId("client-" + id);
+            order.setStatus(OrderStatus.PENDING.name());
+            orders.add(order);
+        }
+        return orders;
+    }
+
+    public OrderRepository repository() {
+        return proxy;
+    }
+
+    public ClientOrderStatsRepository statsRepository() {
+        return statsProxy;
+    }
+
+    public long statements() {
+        return statements;
+    }
+
+    public long rows() {
+        return rows;
+    }
+}
@@ -0,0 +1,68 @@
+package fr.payetonkawa.orders.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import fr.payetonkawa.orders.dto.OrderDto;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+/**
+ * In-process caches. The cache advice runs outside the transaction so a hit never borrows a connection,
+ * and evictions requested inside a transaction are applied once it commits.
+ */
+@Configuration
+@EnableCaching(order = Ordered.HIGHEST_PRECEDENCE)
+public class CacheConfig {
+
+    /** Order lists by client id. */
+    public static final String CLIENT_ORDERS = "clientOrders";
+
+    @Bean
+    public Cache<Object, Object> clientOrdersCache(ClientOrdersCacheProperties properties) {
+        // Caffeine evicts by W-TinyLFU, polling clients keep their entries over one-off lookups
+        return Caffeine.newBuilder()
+                .maximumWeight(properties.maxWeight())
+                .weigher(CacheConfig::weigh)
+                .expireAfterWrite(properties.expireAfterWrite())
+                .recordStats()
+                .build();
+    }
+
+    @Bean
+    public CacheManager cacheManager(Cache<Object, Object> clientOrdersCache) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager();
+        cacheManager.setAllowNullValues(false);
+        cacheManager.registerCustomCache(CLIENT_ORDERS, clientOrdersCache);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+
+    /** Boot already binds gets, puts, evictions and load time, this adds the ratio the dashboards plot. */
+    @Bean
+    public MeterBinder clientOrdersHitRatio(Cache<Object, Object> clientOrdersCache) {
+        return registry -> Gauge.builder("cache.hit.ratio", clientOrdersCache, cache -> cache.stats().hitRate())
+                .tag("cache", CLIENT_ORDERS)
+                .description("Share of lookups served from the cache")
+                .register(registry);
+    }
+
+    static int weigh(Object clientId, Object value) {
+        if (!(value instanceof List<?> orders)) {
+            return 1;
+        }
+        int weight = 1;
+        for (Object order : orders) {
+            List<?> items = ((OrderDto) order).getItems();
+            weight += 1 + (items == null ? 0 : items.size());
+        }
+        return weight;
+    }
+}
@@ -0,0 +1,18 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Cache of {@code GET /v1/{clientId}} results, see {@link CacheConfig#CLIENT_ORDERS}.
+ *
+ * @param maxWeight        total weight kept, one unit per order and per order line
+ * @param expireAfterWrite safety net for writes that bypass the service (manual SQL, other instances)
+ */
+@ConfigurationProperties(prefix = "orders.cache.client-orders")
+public record ClientOrdersCacheProperties(
+        @DefaultValue("200000") long maxWeight,
+        @DefaultValue("10m") Duration expireAfterWrite) {
+}
@@ -0,0 +1,193 @@
+package fr.payetonkawa.orders.config;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Refuses to start when an index the hot queries rely on is missing, built on other columns, or left invalid
+ * by a failed concurrent build: without them every client lookup is a sequential scan, which only shows under load.
+ * On Postgres the monthly partitions are checked one by one too: the metadata only reports the index of the
+ * partitioned table, which says nothing of a partition left without its copy.
+ * Checked through the JDBC metadata once every singleton is created, so after Flyway and the schema generation of
+ * the entity manager factory, and before the web server and the listeners start: a bad schema never takes traffic.
+ * Disabled with {@code orders.schema.verify-indexes=false}.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "orders.schema.verify-indexes", havingValue = "true", matchIfMissing = true)
+@RequiredArgsConstructor
+public class IndexVerifier implements SmartInitializingSingleton {
+
+    /**
+     * Indexes of the V7 migration, rebuilt on the partitioned tables by V9, columns in order, descending
+     * ones suffixed with {@code DESC}.
+     */
+    static final List<ExpectedIndex> EXPECTED = List.of(
+            new ExpectedIndex("orders", "idx_orders_client_created", List.of("client_id", "created_at DESC", "id DESC")),
+            new ExpectedIndex("order_items", "idx_order_items_item_order", List.of("item_id", "order_id")),
+            new ExpectedIndex("order_items", "idx_order_items_order_id", List.of("order_id")));
+
+    private final DataSource dataSource;
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            verify();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the database indexes", e);
+        }
+    }
+
+    void verify() throws SQLException {
+        List<String> problems = new ArrayList<>();
+        try (Connection connection = dataSource.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            Map<String, Map<String, List<String>>> indexesByTable = new LinkedHashMap<>();
+            for (ExpectedIndex expected : EXPECTED) {
+                Map<String, List<String>> indexes = indexesByTable.computeIfAbsent(expected.table(),
+                        table -> readIndexes(metaData, table));
+                problems.addAll(problems(expected, indexes));
+            }
+            problems.addAll(invalidIndexes(connection));
+            problems.addAll(unindexedPartitions(connection));
+        }
+
+        if (!problems.isEmpty()) {
+            throw new IllegalStateException("Database indexes do not match the migrations, run them (or repair"
+                    + " a failed one) before starting: " + String.join("; ", problems));
+        }
+        log.info("📊 Verified {} database indexes", EXPECTED.size());
+    }
+
+    static List<String> problems(ExpectedIndex expected, Map<String, List<String>> indexes) {
+        List<String> actual = indexes.get(expected.name());
+        if (actual == null) {
+            return List.of(expected.name() + " is missing on " + expected.table());
+        }
+        if (!actual.equals(expected.columns())) {
+            return List.of(expected.name() + " is on " + actual + " instead of " + expected.columns());
+        }
+        return List.of();
+    }
+
+    static List<String> unindexedPartitions(ExpectedIndex expected, Map<String, Set<String>> indexesByPartition) {
+        List<String> problems = new ArrayList<>();
+        indexesByPartition.forEach((partition, indexes) -> {
+            if (!indexes.contains(expected.name())) {
+                problems.add(expected.name() + " has no valid index attached on partition " + partition);
+            }
+        });
+        return problems;
+    }
+
+    /** Index name to its columns, names lower-cased whatever case the database stores identifiers in. */
+    private static Map<String, List<String>> readIndexes(DatabaseMetaData metaData, String table) {
+        try {
+            String tableName = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+            Map<String, TreeMap<Short, String>> columns = new LinkedHashMap<>();
+            try (ResultSet rows = metaData.getIndexInfo(null, null, tableName, false, false)) {
+                while (rows.next()) {
+                    String index = rows.getString("INDEX_NAME");
+                    String column = rows.getString("COLUMN_NAME");
+                    if (index == null || column == null) {
+                        continue;
+                    }
+                    String name = column.toLowerCase(Locale.ROOT) + ("D".equals(rows.getString("ASC_OR_DESC")) ? " DESC" : "");
+                    columns.computeIfAbsent(index.toLowerCase(Locale.ROOT), key -> new TreeMap<>())
+                            .put(rows.getShort("ORDINAL_POSITION"), name);
+                }
+            }
+            Map<String, List<String>> indexes = new LinkedHashMap<>();
+            columns.forEach((index, ordered) -> indexes.put(index, List.copyOf(ordered.values())));
+            return indexes;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the indexes of " + table, e);
+        }
+    }
+
+    // a failed CREATE INDEX CONCURRENTLY leaves an index that exists but is never used
+    private static List<String> invalidIndexes(Connection connection) throws SQLException {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return List.of();
+        }
+        List<String> invalid = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "select c.relname from pg_index i join pg_class c on c.oid = i.indexrelid where not i.indisvalid")) {
+            while (rows.next()) {
+                String index = rows.getString(1);
+                if (EXPECTED.stream().anyMatch(expected -> expected.name().equals(index))) {
+                    invalid.add(index + " is invalid, drop it and run the migration again");
+                }
+            }
+        }
+        return invalid;
+    }
+
+    // CREATE TABLE ... PARTITION OF copies the indexes of the parent, an ATTACH PARTITION of an existing table
+    // only attaches the ones it already has
+    private static List<String> unindexedPartitions(Connection connection) throws SQLException {
+        if (!"PostgreSQL".equals(connection.getMetaData().getDatabaseProductName())) {
+            return List.of();
+        }
+        List<String> problems = new ArrayList<>();
+        Map<String, Map<String, Set<String>>> partitionsByTable = new LinkedHashMap<>();
+        for (ExpectedIndex expected : EXPECTED) {
+            Map<String, Set<String>> partitions = partitionsByTable.get(expected.table());
+            if (partitions == null) {
+                partitions = readPartitionIndexes(connection, expected.table());
+                partitionsByTable.put(expected.table(), partitions);
+            }
+            problems.addAll(unindexedPartitions(expected, partitions));
+        }
+        return problems;
+    }
+
+    /** Partition name to the indexes of the partitioned table its own valid indexes are attached to. */
+    private static Map<String, Set<String>> readPartitionIndexes(Connection connection, String table) throws SQLException {
+        Map<String, Set<String>> partitions = new TreeMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "select child.relname, parent_index.relname"
+                        + " from pg_inherits part"
+                        + " join pg_class parent on parent.oid = part.inhparent"
+                        + " join pg_class child on child.oid = part.inhrelid"
+                        + " left join pg_index idx on idx.indrelid = child.oid and idx.indisvalid"
+                        + " left join pg_inherits attached on attached.inhrelid = idx.indexrelid"
+                        + " left join pg_class parent_index on parent_index.oid = attached.inhparent"
+                        + " where parent.relname = ? and parent.relnamespace = current_schema()::regnamespace")) {
+            statement.setString(1, table);
+            try (ResultSet rows = statement.executeQuery()) {
+                while (rows.next()) {
+                    Set<String> indexes = partitions.computeIfAbsent(rows.getString(1), key -> new HashSet<>());
+                    String index = rows.getString(2);
+                    if (index != null) {
+                        indexes.add(index);
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    record ExpectedIndex(String table, String name, List<String> columns) {
+    }
+}
@@ -0,0 +1,26 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Batch consumption of {@code service.order.queue}, see {@link RabbitMQConfig#BATCH_LISTENER_FACTORY}.
+ *
+ * @param enabled        switches the order queue listener from one message at a time to batches
+ * @param size           max messages handed to the listener (and written) at once
+ * @param receiveTimeout how long a consumer waits to fill a batch before handing over a partial one
+ * @param prefetch       unacknowledged messages the broker may push to each consumer, at least {@code size}
+ * @param concurrency    initial number of consumers
+ * @param maxConcurrency upper bound of consumers under load
+ */
+@ConfigurationProperties(prefix = "orders.listener.batch")
+public record ListenerProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("100") int size,
+        @DefaultValue("200ms") Duration receiveTimeout,
+        @DefaultValue("250") int prefetch,
+        @DefaultValue("2") int concurrency,
+        @DefaultValue("4") int maxConcurrency) {
+}
@@ -0,0 +1,34 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Delayed redelivery of the {@code service.order.queue} messages whose processing failed, see
+ * {@code OrderEventRecoverer}. Retry {@code n} waits {@code initialDelay * multiplier^(n-1)} in its own queue.
+ *
+ * @param maxAttempts  retries before a message is moved to the dead-letter queue
+ * @param initialDelay wait before the first retry
+ * @param multiplier   growth of the wait between two retries
+ */
+@ConfigurationProperties(prefix = "orders.listener.retry")
+public record ListenerRetryProperties(
+        @DefaultValue("3") int maxAttempts,
+        @DefaultValue("1s") Duration initialDelay,
+        @DefaultValue("4") double multiplier) {
+
+    /** Wait before each retry, the first one at index 0. */
+    public List<Duration> delays() {
+        List<Duration> delays = new ArrayList<>(maxAttempts);
+        double delay = initialDelay.toMillis();
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            delays.add(Duration.ofMillis(Math.round(delay)));
+            delay *= multiplier;
+        }
+        return delays;
+    }
+}
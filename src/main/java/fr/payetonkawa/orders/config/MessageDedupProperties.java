@@ -0,0 +1,20 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Deduplication of the consumed stock events, see {@code MessageDeduplicator}.
+ *
+ * @param recentIds         ids each in-memory filter generation holds, the last one to two generations are remembered
+ * @param falsePositiveRate chance for a new id to be taken for a recent one, costing a lookup in {@code processed_messages}
+ * @param retention         how long processed message ids are kept, longer than any redelivery can take
+ */
+@ConfigurationProperties(prefix = "orders.listener.dedup")
+public record MessageDedupProperties(
+        @DefaultValue("100000") int recentIds,
+        @DefaultValue("0.01") double falsePositiveRate,
+        @DefaultValue("7d") Duration retention) {
+}
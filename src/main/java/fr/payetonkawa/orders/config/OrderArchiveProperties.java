@@ -0,0 +1,23 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * Partition upkeep and archival of closed orders, see {@code OrderArchiver}.
+ *
+ * @param after          age from which a confirmed, cancelled or failed order is archived
+ * @param pendingTimeout age from which an order still pending is failed, its stock reply is not coming: every
+ *                       order is then archived by the larger of the two ages and its month can be dropped
+ * @param chunkSize      orders moved per transaction
+ * @param monthsAhead    monthly partitions created ahead of the current month
+ */
+@ConfigurationProperties(prefix = "orders.archive")
+public record OrderArchiveProperties(
+        @DefaultValue("90d") Duration after,
+        @DefaultValue("30d") Duration pendingTimeout,
+        @DefaultValue("1000") int chunkSize,
+        @DefaultValue("3") int monthsAhead) {
+}
@@ -0,0 +1,18 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Bulk creation through {@code POST /v1/batch}.
+ *
+ * @param maxSize      max orders accepted in one request
+ * @param chunkSize    orders persisted per transaction
+ * @param groupedEvent publish one {@code order.created.batch} message per chunk instead of one {@code order.created} per order
+ */
+@ConfigurationProperties(prefix = "orders.batch")
+public record OrderBatchProperties(
+        @DefaultValue("5000") int maxSize,
+        @DefaultValue("500") int chunkSize,
+        @DefaultValue("false") boolean groupedEvent) {
+}
@@ -0,0 +1,24 @@
+package fr.payetonkawa.orders.config;
+
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Shape of the order events we publish.
+ *
+ * @param updatedFormat {@code full} sends the whole {@code previousItems} and {@code items} lists with every
+ *                      {@code order.updated}; {@code delta} only sends the quantity change of each touched itemId,
+ *                      flagged with {@code "format": "delta"} in the payload
+ * @param codec         wire format of the published events: {@code json}, {@code cbor} or {@code smile}. Only switch
+ *                      once every consumer of {@code global.events} decodes by {@code content_type}
+ */
+@ConfigurationProperties(prefix = "orders.events")
+public record OrderEventProperties(@DefaultValue("full") UpdatedFormat updatedFormat,
+                                   @DefaultValue("json") MessageCodec codec) {
+
+    public enum UpdatedFormat {
+        FULL,
+        DELTA
+    }
+}
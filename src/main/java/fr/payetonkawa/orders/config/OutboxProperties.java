@@ -0,0 +1,18 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.time.Duration;
+
+/**
+ * @param batchSize      max events published per broker confirm
+ * @param confirmTimeout how long the relay waits for the broker to confirm a batch
+ * @param retention      how long dispatched events are kept before being pruned
+ */
+@ConfigurationProperties(prefix = "orders.outbox")
+public record OutboxProperties(
+        @DefaultValue("200") int batchSize,
+        @DefaultValue("5s") Duration confirmTimeout,
+        @DefaultValue("24h") Duration retention) {
+}
@@ -2,12 +2,22 @@ package fr.payetonkawa.orders.config;
 
 import fr.payetonkawa.orders.messaging.ExchangeQueues;
 import org.springframework.amqp.core.*;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.boot.autoconfigure.amqp.RabbitTemplateCustomizer;
+import org.springframework.boot.autoconfigure.amqp.SimpleRabbitListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 @Configuration
 public class RabbitMQConfig {
 
+    public static final String BATCH_LISTENER_FACTORY = "batchListenerContainerFactory";
+
     @Bean
     public TopicExchange eventExchange() {
         return new TopicExchange(ExchangeQueues.EXCHANGE_NAME);
@@ -22,4 +32,52 @@ public class RabbitMQConfig {
     public Binding orderBinding(Queue orderQueue, TopicExchange exchange) {
         return BindingBuilder.bind(orderQueue).to(exchange).with("product.#");
     }
+
+    /**
+     * One delay queue per retry, its expired messages are dead-lettered straight back to the order queue through
+     * the default exchange. Queues are named by their delay: changing the backoff declares new queues instead of
+     * redeclaring existing ones with other arguments. The order queue keeps its arguments for the same reason,
+     * {@code OrderEventRecoverer} routes failed messages itself.
+     */
+    @Bean
+    public Declarables orderRetryQueues(ListenerRetryProperties properties) {
+        List<Declarable> queues = new ArrayList<>();
+        for (Duration delay : properties.delays()) {
+            queues.add(QueueBuilder.durable(ExchangeQueues.orderRetryQueueName(delay.toMillis()))
+                    .ttl((int) delay.toMillis())
+                    .deadLetterExchange("")
+                    .deadLetterRoutingKey(ExchangeQueues.ORDER_QUEUE_NAME)
+                    .build());
+        }
+        queues.add(QueueBuilder.durable(ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME).build());
+        return new Declarables(queues);
+    }
+
+    /** Publishes on a dedicated connection so a blocked publisher never stalls the listener channels. */
+    @Bean
+    public RabbitTemplateCustomizer publisherConnectionCustomizer() {
+        return template -> template.setUsePublisherConnection(true);
+    }
+
+    /**
+     * Hands the listener up to {@code size} messages at once. They are acknowledged together
+     * once the listener returns, i.e. after the status update transaction committed.
+     */
+    @Bean(BATCH_LISTENER_FACTORY)
+    public SimpleRabbitListenerContainerFactory batchListenerContainerFactory(
+            SimpleRabbitListenerContainerFactoryConfigurer configurer,
+            ConnectionFactory connectionFactory,
+            ListenerProperties properties) {
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        configurer.configure(factory, connectionFactory);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(properties.size());
+        factory.setReceiveTimeout(properties.receiveTimeout().toMillis());
+        factory.setPrefetchCount(Math.max(properties.prefetch(), properties.size()));
+        factory.setConcurrentConsumers(properties.concurrency());
+        factory.setMaxConcurrentConsumers(properties.maxConcurrency());
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        return factory;
+    }
 }
@@ -0,0 +1,13 @@
+package fr.payetonkawa.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+/**
+ * Failing the pending orders of a depleted product, see {@code StockDepletionService}.
+ *
+ * @param chunkSize orders resolved and failed per transaction
+ */
+@ConfigurationProperties(prefix = "orders.depletion")
+public record StockDepletionProperties(@DefaultValue("500") int chunkSize) {
+}
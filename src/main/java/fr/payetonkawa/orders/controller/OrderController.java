@@ -1,12 +1,25 @@
 package fr.payetonkawa.orders.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.dto.ClientOrderStatsDto;
+import fr.payetonkawa.orders.dto.ItemDepletionDto;
+import fr.payetonkawa.orders.dto.OrderBatchResultDto;
 import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderPageDto;
+import fr.payetonkawa.orders.service.ClientOrderStatsService;
+import fr.payetonkawa.orders.service.OrderBatchService;
 import fr.payetonkawa.orders.service.OrderService;
+import fr.payetonkawa.orders.service.StockDepletionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.List;
 
 @RestController
@@ -16,14 +29,53 @@ import java.util.List;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderBatchService orderBatchService;
+    private final StockDepletionService stockDepletionService;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final ObjectMapper objectMapper;
 
     @GetMapping("/{clientId}")
     @Operation(summary = "Get orders by client ID",
-               description = "Retrieve all orders associated with a specific client ID")
+               description = "Retrieve all orders associated with a specific client ID. "
+                       + "Prefer the paginated or streaming variants for large histories")
     public List<OrderDto> getOrdersByClientId(@PathVariable String clientId) {
         return orderService.getByClientId(clientId);
     }
 
+    @GetMapping("/{clientId}/page")
+    @Operation(summary = "Get a page of orders by client ID",
+               description = "Retrieve a client's orders newest first, resuming after the given continuation cursor")
+    public OrderPageDto getOrderPageByClientId(@PathVariable String clientId,
+                                               @RequestParam(required = false) String cursor,
+                                               @RequestParam(defaultValue = "" + OrderService.DEFAULT_PAGE_SIZE) int limit) {
+        return orderService.getPageByClientId(clientId, cursor, limit);
+    }
+
+    @GetMapping("/{clientId}/stats")
+    @Operation(summary = "Get order statistics by client ID",
+               description = "Order counts per status, spend per currency and last order time of a client, "
+                       + "read from a rollup in constant time whatever the length of the history")
+    public ClientOrderStatsDto getStatsByClientId(@PathVariable String clientId) {
+        return clientOrderStatsService.get(clientId);
+    }
+
+    @GetMapping(value = "/{clientId}/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "Stream orders by client ID",
+               description = "Stream all orders of a client as newline-delimited JSON, newest first")
+    public ResponseEntity<StreamingResponseBody> streamOrdersByClientId(@PathVariable String clientId) {
+        StreamingResponseBody body = out -> orderService.streamByClientId(clientId, order -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(order));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
     @PostMapping
     @Operation(summary = "Create a new order",
                description = "Create a new order with the provided details")
@@ -31,6 +83,20 @@ public class OrderController {
         return orderService.create(orderDto);
     }
 
+    @PostMapping("/batch")
+    @Operation(summary = "Create orders in bulk",
+               description = "Validate then create many orders at once, returning one result per order in request order")
+    public List<OrderBatchResultDto> createOrders(@RequestBody List<OrderDto> orderDtos) {
+        return orderBatchService.create(orderDtos);
+    }
+
+    @PostMapping("/items/{itemId}/fail-pending")
+    @Operation(summary = "Fail the pending orders of a product",
+               description = "Move every pending order holding the product to FAILED, as a product.stock.depleted event does")
+    public ItemDepletionDto failPendingOrders(@PathVariable String itemId) {
+        return new ItemDepletionDto(itemId, stockDepletionService.failPendingOrders(itemId));
+    }
+
     @PatchMapping("/{orderId}")
     @Operation(summary = "Update an existing order",
                description = "Update the details of an existing order by its ID")
@@ -0,0 +1,48 @@
+package fr.payetonkawa.orders.dto;
+
+import fr.payetonkawa.orders.entity.ClientOrderStats;
+import lombok.Data;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Body of {@code GET /v1/{clientId}/stats}. */
+@Data
+public class ClientOrderStatsDto {
+
+    private String clientId;
+    private long orders;
+    private long pending;
+    private long confirmed;
+    private long failed;
+    private long cancelled;
+    /** Spend over all the client's orders, in minor units, by ISO 4217 currency code. */
+    private Map<String, Long> totalAmounts = new LinkedHashMap<>();
+    /** Creation time of the client's latest order, null when it has none. */
+    private Long lastOrderAt;
+
+    /** Counts summed over the client's rows, one per currency; amounts stay per currency. */
+    public static ClientOrderStatsDto fromEntities(String clientId, List<ClientOrderStats> rows) {
+        ClientOrderStatsDto dto = empty(clientId);
+        for (ClientOrderStats stats : rows) {
+            dto.setPending(dto.getPending() + stats.getPendingCount());
+            dto.setConfirmed(dto.getConfirmed() + stats.getConfirmedCount());
+            dto.setFailed(dto.getFailed() + stats.getFailedCount());
+            dto.setCancelled(dto.getCancelled() + stats.getCancelledCount());
+            dto.getTotalAmounts().put(stats.getCurrency(), stats.getTotalAmount());
+            if (stats.getLastOrderAt() != null
+                    && (dto.getLastOrderAt() == null || stats.getLastOrderAt().getTime() > dto.getLastOrderAt())) {
+                dto.setLastOrderAt(stats.getLastOrderAt().getTime());
+            }
+        }
+        dto.setOrders(dto.getPending() + dto.getConfirmed() + dto.getFailed() + dto.getCancelled());
+        return dto;
+    }
+
+    public static ClientOrderStatsDto empty(String clientId) {
+        ClientOrderStatsDto dto = new ClientOrderStatsDto();
+        dto.setClientId(clientId);
+        return dto;
+    }
+}
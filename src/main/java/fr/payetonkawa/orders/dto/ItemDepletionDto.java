@@ -0,0 +1,15 @@
+package fr.payetonkawa.orders.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/** Outcome of {@code POST /v1/items/{itemId}/fail-pending}. */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ItemDepletionDto {
+
+    private String itemId;
+    private int failed;
+}
@@ -0,0 +1,43 @@
+package fr.payetonkawa.orders.dto;
+
+import lombok.Data;
+
+/** Outcome of one order of a {@code POST /v1/batch} request, in request order. */
+@Data
+public class OrderBatchResultDto {
+
+    public static final String CREATED = "CREATED";
+    public static final String REJECTED = "REJECTED";
+    public static final String FAILED = "FAILED";
+
+    private int index;
+    private String result;
+    private OrderDto order;
+    private String error;
+
+    public static OrderBatchResultDto created(int index, OrderDto order) {
+        OrderBatchResultDto dto = new OrderBatchResultDto();
+        dto.setIndex(index);
+        dto.setResult(CREATED);
+        dto.setOrder(order);
+        return dto;
+    }
+
+    /** The order itself is invalid, nothing was written for it. */
+    public static OrderBatchResultDto rejected(int index, String error) {
+        return withError(index, REJECTED, error);
+    }
+
+    /** The order was valid but its chunk could not be committed. */
+    public static OrderBatchResultDto failed(int index, String error) {
+        return withError(index, FAILED, error);
+    }
+
+    private static OrderBatchResultDto withError(int index, String result, String error) {
+        OrderBatchResultDto dto = new OrderBatchResultDto();
+        dto.setIndex(index);
+        dto.setResult(result);
+        dto.setError(error);
+        return dto;
+    }
+}
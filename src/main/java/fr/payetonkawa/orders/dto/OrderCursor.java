@@ -0,0 +1,41 @@
+package fr.payetonkawa.orders.dto;
+
+import fr.payetonkawa.orders.entity.Order;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.util.Base64;
+
+/**
+ * Keyset position in a client's order history, ordered by (createdAt DESC, id DESC).
+ * Exposed to clients only as an opaque Base64 token.
+ */
+public record OrderCursor(long createdAt, long id) {
+
+    private static final char SEPARATOR = ':';
+
+    public static OrderCursor of(Order order) {
+        return new OrderCursor(order.getCreatedAt().getTime(), order.getId());
+    }
+
+    public static OrderCursor decode(String token) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            return new OrderCursor(
+                    Long.parseLong(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = Long.toString(createdAt) + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public Timestamp createdAtTimestamp() {
+        return new Timestamp(createdAt);
+    }
+}
@@ -1,9 +1,14 @@
 package fr.payetonkawa.orders.dto;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
 import lombok.Data;
 
+import java.util.ArrayList;
+import java.util.Currency;
 import java.util.List;
+import java.util.Locale;
 
 @Data
 public class OrderDto {
@@ -12,6 +17,11 @@ public class OrderDto {
     private String clientId;
     private Long createdAt;
     private String status;
+    /** ISO 4217 code of every price of the order, {@value Order#DEFAULT_CURRENCY} when left out on creation. */
+    private String currency;
+    /** Sum of quantity times unit price of the lines, in minor units; computed, ignored on input. */
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private long total;
     private List<OrderItemDto> items;
 
     public static OrderDto fromEntity(Order order) {
@@ -20,10 +30,33 @@ public class OrderDto {
         dto.setClientId(order.getClientId());
         dto.setCreatedAt(order.getCreatedAt().getTime());
         dto.setStatus(order.getStatus());
-        dto.setItems(OrderItemDto.fromEntities(order.getItems()));
+        dto.setCurrency(order.getCurrency());
+
+        // lines and total in one pass over the items
+        List<OrderItem> items = order.getItems();
+        List<OrderItemDto> itemDtos = new ArrayList<>(items.size());
+        long total = 0;
+        for (OrderItem item : items) {
+            itemDtos.add(OrderItemDto.fromEntity(item));
+            total = Math.addExact(total, item.lineTotalMinor());
+        }
+        dto.setTotal(total);
+        dto.setItems(itemDtos);
         return dto;
     }
 
+    /** Currency code of the request, upper-cased, or the default one when it gives none. */
+    public String currencyOrDefault() {
+        if (currency == null || currency.isBlank()) {
+            return Order.DEFAULT_CURRENCY;
+        }
+        try {
+            return Currency.getInstance(currency.trim().toUpperCase(Locale.ROOT)).getCurrencyCode();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown currency: " + currency, e);
+        }
+    }
+
     public static List<OrderDto> fromEntities(List<Order> orders) {
         return orders.stream()
                 .map(OrderDto::fromEntity)
@@ -1,5 +1,6 @@
 package fr.payetonkawa.orders.dto;
 
+import com.fasterxml.jackson.annotation.JsonSetter;
 import fr.payetonkawa.orders.entity.OrderItem;
 import lombok.Data;
 
@@ -11,18 +12,15 @@ public class OrderItemDto {
     private Long id;
     private String itemId;
     private int quantity = 1;
-    private Double unitPrice;
+    /** Minor units of the order's currency, 999 for 9.99 EUR. Required: a line is never priced 0 by omission. */
+    private Long unitPriceMinor;
 
     public static OrderItemDto fromEntity(OrderItem item) {
         OrderItemDto dto = new OrderItemDto();
         dto.setId(item.getId());
         dto.setItemId(item.getItemId());
         dto.setQuantity(item.getQuantity());
-        if (item.getUnitPrice() == null) {
-            dto.setUnitPrice(0.0);
-        } else {
-            dto.setUnitPrice(item.getUnitPrice());
-        }
+        dto.setUnitPriceMinor(item.getUnitPriceMinor());
         return dto;
     }
 
@@ -43,11 +41,22 @@ public class OrderItemDto {
             throw new IllegalArgumentException("Quantity must be greater than zero");
         }
         item.setQuantity(this.quantity);
-        if (this.unitPrice < 0) {
+        if (this.unitPriceMinor == null) {
+            throw new IllegalArgumentException("Unit price must be provided, in minor units (unitPriceMinor)");
+        }
+        if (this.unitPriceMinor < 0) {
             throw new IllegalArgumentException("Unit price cannot be negative");
         }
-        item.setUnitPrice(this.unitPrice);
+        item.setUnitPriceMinor(this.unitPriceMinor);
         return item;
     }
 
+    /**
+     * The decimal price of the former API. Rejected, so the request fails with a 400 instead of the line
+     * being stored at price 0 as an unknown property would be.
+     */
+    @JsonSetter("unitPrice")
+    void rejectDecimalUnitPrice(Object unitPrice) {
+        throw new IllegalArgumentException("unitPrice is no longer accepted, send unitPriceMinor in minor units");
+    }
 }
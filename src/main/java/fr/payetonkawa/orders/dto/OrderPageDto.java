@@ -0,0 +1,18 @@
+package fr.payetonkawa.orders.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderPageDto {
+
+    private List<OrderDto> orders;
+    /** Opaque token for the next page, null when the history is exhausted. */
+    private String nextCursor;
+
+}
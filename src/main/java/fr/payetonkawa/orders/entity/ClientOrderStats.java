@@ -0,0 +1,67 @@
+package fr.payetonkawa.orders.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.IdClass;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.hibernate.annotations.Immutable;
+
+import java.io.Serializable;
+import java.sql.Timestamp;
+
+/**
+ * One client's order counts per status, spend and last order time, over its orders in one currency.
+ * Only read through JPA: every write is an increment, see {@code ClientOrderStatsRepository#applyDeltas}.
+ */
+@Entity
+@Immutable
+@Table(name = "client_order_stats")
+@IdClass(ClientOrderStats.Key.class)
+@Getter
+@Setter
+public class ClientOrderStats {
+
+    @Id
+    @Column(name = "client_id")
+    private String clientId;
+
+    // amounts of different currencies are never added up, each has its row
+    @Id
+    @Column(name = "currency", length = 3)
+    private String currency;
+
+    @Column(name = "pending_count", nullable = false)
+    private long pendingCount;
+
+    @Column(name = "confirmed_count", nullable = false)
+    private long confirmedCount;
+
+    @Column(name = "failed_count", nullable = false)
+    private long failedCount;
+
+    @Column(name = "cancelled_count", nullable = false)
+    private long cancelledCount;
+
+    // minor units of the row's currency
+    @Column(name = "total_amount", nullable = false)
+    private long totalAmount;
+
+    @Column(name = "last_order_at")
+    private Timestamp lastOrderAt;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String clientId;
+        private String currency;
+    }
+}
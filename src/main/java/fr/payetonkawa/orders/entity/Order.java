@@ -3,19 +3,28 @@ package fr.payetonkawa.orders.entity;
 import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
+import org.hibernate.annotations.BatchSize;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "orders")
+@Table(name = "orders", indexes = {
+        // client history, newest first: see OrderRepository's keyset queries
+        @Index(name = "idx_orders_client_created", columnList = "client_id, created_at desc, id desc")
+})
 @Getter
 @Setter
 public class Order {
 
+    public static final int ITEMS_BATCH_SIZE = 50;
+    public static final String DEFAULT_CURRENCY = "EUR";
+
+    // Pooled sequence: ids are reserved 50 at a time, which keeps JDBC insert batching enabled
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "orders_seq")
+    @SequenceGenerator(name = "orders_seq", sequenceName = "orders_seq", allocationSize = 50)
     private Long id;
 
     @Column(name = "client_id", nullable = false)
@@ -27,15 +36,31 @@ public class Order {
     @Column(name = "status", nullable = false)
     private String status;
 
+    // ISO 4217 code, all lines of the order are priced in it
+    @Column(name = "currency", nullable = false, length = 3)
+    private String currency = DEFAULT_CURRENCY;
+
+    // Entity writes fail on a concurrent change instead of overwriting it; status-only updates bump it too
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
+
     @PrePersist
     private void onCreate() {
         this.createdAt = new Timestamp(System.currentTimeMillis());
-        this.status = "PENDING"; // Default status when order is created
+        this.status = OrderStatus.PENDING.name(); // Default status when order is created
     }
 
-    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.EAGER, orphanRemoval = true)
+    // Loaded on demand: read paths that need items use an entity graph, list views batch-fetch them
+    @OneToMany(mappedBy = "order", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
+    @BatchSize(size = Order.ITEMS_BATCH_SIZE)
     private List<OrderItem> items = new ArrayList<>();
 
+    public void addItem(OrderItem item) {
+        item.setOrder(this);
+        this.items.add(item);
+    }
+
     public void setItems(List<OrderItem> orderItems) {
         this.items.clear();
         if (orderItems != null) {
@@ -4,28 +4,56 @@ import jakarta.persistence.*;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.sql.Timestamp;
+import java.util.Objects;
+
 @Entity
-@Table(name = "order_items")
+@Table(name = "order_items", indexes = {
+        // covers "which orders hold this product", see OrderItemRepository#findOrderIdsByItemIdAfter
+        @Index(name = "idx_order_items_item_order", columnList = "item_id, order_id"),
+        @Index(name = "idx_order_items_order_id", columnList = "order_id")
+})
 @Getter
 @Setter
 public class OrderItem {
 
-    @Id @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_items_seq")
+    @SequenceGenerator(name = "order_items_seq", sequenceName = "order_items_seq", allocationSize = 50)
     private Long id;
 
-    @Column(name = "item_id", nullable = false)
+    // Natural key of the line within its order, updates merge on it and never change it
+    @Column(name = "item_id", nullable = false, updatable = false)
     private String itemId;
 
     @Column(name = "quantity")
     private int quantity = 1;
 
-    @Column(name = "unit_price")
-    private Double unitPrice;
+    // Minor units of the order's currency (cents for EUR): sums stay exact, see V11__money_minor_units.sql
+    @Column(name = "unit_price_minor", nullable = false)
+    private long unitPriceMinor;
 
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "order_id")
     private Order order;
 
+    // Partition key of order_items, the creation date of the order: see V9__partition_orders_by_month.sql
+    @Column(name = "order_created_at", nullable = false, updatable = false)
+    private Timestamp orderCreatedAt;
+
+    // Runs after the order's own callback when the line is cascaded from it, so its creation date is set
+    @PrePersist
+    private void onCreate() {
+        if (order != null) {
+            this.orderCreatedAt = order.getCreatedAt();
+        }
+    }
+
+    /** Price of the line in minor units, failing rather than wrapping around on overflow. */
+    public long lineTotalMinor() {
+        return Math.multiplyExact(unitPriceMinor, quantity);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -33,8 +61,9 @@ public class OrderItem {
         OrderItem that = (OrderItem) o;
         return id != null && id.equals(that.id);
     }
-    @Override
-    public int hashCode() { return 31; }
 
+    // itemId never changes once written, so the hash stays stable across persist, unlike the generated id
+    @Override
+    public int hashCode() { return Objects.hashCode(itemId); }
 
 }
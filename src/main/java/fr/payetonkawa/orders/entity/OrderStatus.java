@@ -0,0 +1,33 @@
+package fr.payetonkawa.orders.entity;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Order lifecycle. Every order starts {@code PENDING}; the stock reply confirms or fails it, and the customer
+ * may cancel it until it has failed. Stored by name in {@code orders.status}.
+ */
+public enum OrderStatus {
+    PENDING,
+    CONFIRMED,
+    FAILED,
+    CANCELLED;
+
+    /** Statuses an order must be in to move to this one. */
+    public Set<OrderStatus> predecessors() {
+        return switch (this) {
+            case PENDING -> Set.of();
+            case CONFIRMED, FAILED -> Set.of(PENDING);
+            case CANCELLED -> Set.of(PENDING, CONFIRMED);
+        };
+    }
+
+    /** Predecessor names, as bound to {@code status in (...)} guards. */
+    public List<String> predecessorNames() {
+        return predecessors().stream().map(Enum::name).toList();
+    }
+
+    public boolean canFollow(String status) {
+        return status != null && predecessorNames().contains(status);
+    }
+}
@@ -0,0 +1,44 @@
+package fr.payetonkawa.orders.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.sql.Timestamp;
+
+/**
+ * Event written in the same transaction as the order it describes, relayed to the broker afterwards.
+ */
+@Entity
+@Table(name = "order_outbox")
+@Getter
+@Setter
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "order_outbox_seq")
+    @SequenceGenerator(name = "order_outbox_seq", sequenceName = "order_outbox_seq", allocationSize = 50)
+    private Long id;
+
+    @Column(name = "routing_key", nullable = false)
+    private String routingKey;
+
+    /** Message body, serialized once when the event is written. */
+    @Column(name = "payload", nullable = false)
+    private byte[] payload;
+
+    /** AMQP content type of the payload, set from the {@code MessageCodec} it was encoded with. */
+    @Column(name = "content_type", nullable = false)
+    private String contentType = "text/plain";
+
+    @Column(name = "created_at", nullable = false, updatable = false)
+    private Timestamp createdAt;
+
+    @Column(name = "dispatched_at")
+    private Timestamp dispatchedAt;
+
+    @PrePersist
+    private void onCreate() {
+        this.createdAt = new Timestamp(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,36 @@
+package fr.payetonkawa.orders.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import org.springframework.data.domain.Persistable;
+
+import java.sql.Timestamp;
+
+/**
+ * Marker of a consumed message, written in the same transaction as the change the message caused.
+ */
+@Entity
+@Table(name = "processed_messages")
+@Getter
+@NoArgsConstructor
+public class ProcessedMessage implements Persistable<String> {
+
+    @Id
+    @Column(name = "message_id")
+    private String id;
+
+    @Column(name = "processed_at", nullable = false, updatable = false)
+    private Timestamp processedAt;
+
+    public ProcessedMessage(String id) {
+        this.id = id;
+        this.processedAt = new Timestamp(System.currentTimeMillis());
+    }
+
+    /** Markers are only ever inserted, so save() persists them straight away instead of selecting first. */
+    @Override
+    public boolean isNew() {
+        return true;
+    }
+}
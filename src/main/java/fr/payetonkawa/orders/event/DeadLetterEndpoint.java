@@ -0,0 +1,122 @@
+package fr.payetonkawa.orders.event;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.GetResponse;
+import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/deadletters}: lists the messages parked in {@link ExchangeQueues#ORDER_DEAD_LETTER_QUEUE_NAME}
+ * without consuming them, and replays them to the order queue once the cause is fixed.
+ */
+@Slf4j
+@Component
+@Endpoint(id = "deadletters")
+@RequiredArgsConstructor
+public class DeadLetterEndpoint {
+
+    static final int DEFAULT_LIMIT = 100;
+
+    private final RabbitTemplate rabbitTemplate;
+
+    /** Oldest dead letters first, fetched unacknowledged then all handed back to the queue in their order. */
+    @ReadOperation
+    public DeadLetters deadLetters(@Nullable Integer limit) {
+        return rabbitTemplate.execute(channel -> {
+            long depth = channel.queueDeclarePassive(ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME).getMessageCount();
+            List<DeadLetter> messages = new ArrayList<>();
+            long lastDeliveryTag = -1;
+            GetResponse response;
+            while (messages.size() < limitOrDefault(limit)
+                    && (response = channel.basicGet(ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, false)) != null) {
+                messages.add(DeadLetter.of(response));
+                lastDeliveryTag = response.getEnvelope().getDeliveryTag();
+            }
+            if (lastDeliveryTag >= 0) {
+                channel.basicNack(lastDeliveryTag, true, true);
+            }
+            return new DeadLetters(depth, messages);
+        });
+    }
+
+    /** Sends up to {@code limit} dead letters back to the order queue with a fresh retry budget. */
+    @WriteOperation
+    public int replay(@Nullable Integer limit) {
+        Integer replayed = rabbitTemplate.execute(channel -> {
+            int count = 0;
+            GetResponse response;
+            while (count < limitOrDefault(limit)
+                    && (response = channel.basicGet(ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, false)) != null) {
+                republish(channel, response);
+                channel.basicAck(response.getEnvelope().getDeliveryTag(), false);
+                count++;
+            }
+            return count;
+        });
+        log.info("📤 Replayed {} dead-lettered events to '{}'", replayed, ExchangeQueues.ORDER_QUEUE_NAME);
+        return replayed;
+    }
+
+    private static void republish(Channel channel, GetResponse response) throws IOException {
+        AMQP.BasicProperties properties = response.getProps();
+        Map<String, Object> headers = properties.getHeaders() == null ? new HashMap<>() : new HashMap<>(properties.getHeaders());
+        headers.remove(OrderEventRecoverer.ATTEMPTS_HEADER);
+        headers.remove(OrderEventRecoverer.EXCEPTION_HEADER);
+        channel.basicPublish("", ExchangeQueues.ORDER_QUEUE_NAME, properties.builder().headers(headers).build(), response.getBody());
+    }
+
+    private static int limitOrDefault(Integer limit) {
+        return limit == null || limit <= 0 ? DEFAULT_LIMIT : limit;
+    }
+
+    public record DeadLetters(long depth, List<DeadLetter> messages) {
+    }
+
+    /** One parked message: binary bodies (CBOR, Smile) are shown in Base64. */
+    public record DeadLetter(String messageId, String routingKey, int attempts, String exception,
+                             String contentType, String body) {
+
+        static DeadLetter of(GetResponse response) {
+            AMQP.BasicProperties properties = response.getProps();
+            Map<String, Object> headers = properties.getHeaders() == null ? Map.of() : properties.getHeaders();
+            Object routingKey = headers.get(OrderEventRecoverer.ROUTING_KEY_HEADER);
+            Object attempts = headers.get(OrderEventRecoverer.ATTEMPTS_HEADER);
+            Object exception = headers.get(OrderEventRecoverer.EXCEPTION_HEADER);
+            return new DeadLetter(
+                    properties.getMessageId(),
+                    routingKey != null ? routingKey.toString() : response.getEnvelope().getRoutingKey(),
+                    attempts instanceof Number number ? number.intValue() : 0,
+                    exception != null ? exception.toString() : null,
+                    properties.getContentType(),
+                    body(properties.getContentType(), response.getBody()));
+        }
+
+        private static String body(String contentType, byte[] body) {
+            try {
+                if (MessageCodec.forContentType(contentType).isText()) {
+                    return new String(body, StandardCharsets.UTF_8);
+                }
+            } catch (IllegalArgumentException e) {
+                // unsupported content type, shown as raw bytes
+            }
+            return Base64.getEncoder().encodeToString(body);
+        }
+    }
+}
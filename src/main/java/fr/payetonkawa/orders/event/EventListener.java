@@ -1,59 +1,262 @@
 package fr.payetonkawa.orders.event;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.config.RabbitMQConfig;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderStatus;
 import fr.payetonkawa.orders.exception.MissingDataException;
-import fr.payetonkawa.orders.messaging.ExchangeMessage;
 import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import fr.payetonkawa.orders.messaging.ItemDepletedEvent;
+import fr.payetonkawa.orders.messaging.StockEvent;
+import fr.payetonkawa.orders.messaging.StockEventDecoder;
+import fr.payetonkawa.orders.repository.OrderOwner;
 import fr.payetonkawa.orders.repository.OrderRepository;
-import lombok.RequiredArgsConstructor;
+import fr.payetonkawa.orders.service.ClientOrderStatsChanges;
+import fr.payetonkawa.orders.service.ClientOrderStatsService;
+import fr.payetonkawa.orders.service.ClientOrdersCache;
+import fr.payetonkawa.orders.service.StockDepletionService;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.stereotype.Component;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @Component
-@RequiredArgsConstructor
 @Slf4j
 public class EventListener {
 
+    static final String ITEM_DEPLETED = "product.stock.depleted";
+
     private final OrderRepository orderRepository;
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final StockEventDecoder stockEventDecoder;
+    private final ClientOrdersCache clientOrdersCache;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final MessageDeduplicator messageDeduplicator;
+    private final StockDepletionService stockDepletionService;
+    private final OrderEventRecoverer orderEventRecoverer;
+
+    private final Meter.MeterProvider<Timer> processing;
+    private final Timer batchProcessing;
+    private final Meter.MeterProvider<Timer> lag;
 
-    @RabbitListener(queues = ExchangeQueues.ORDER_QUEUE_NAME)
-    public void handleEvent(String rawMessage, Message amqpMessage) throws Exception {
-        String routingKey = amqpMessage.getMessageProperties().getReceivedRoutingKey();
+    public EventListener(OrderRepository orderRepository, StockEventDecoder stockEventDecoder,
+                         ClientOrdersCache clientOrdersCache, ClientOrderStatsService clientOrderStatsService,
+                         MessageDeduplicator messageDeduplicator,
+                         StockDepletionService stockDepletionService, OrderEventRecoverer orderEventRecoverer,
+                         MeterRegistry meterRegistry) {
+        this.orderRepository = orderRepository;
+        this.stockEventDecoder = stockEventDecoder;
+        this.clientOrdersCache = clientOrdersCache;
+        this.clientOrderStatsService = clientOrderStatsService;
+        this.messageDeduplicator = messageDeduplicator;
+        this.stockDepletionService = stockDepletionService;
+        this.orderEventRecoverer = orderEventRecoverer;
+        this.processing = Timer.builder("orders.events.consume.latency")
+                .description("Time to apply one stock event")
+                .withRegistry(meterRegistry);
+        this.batchProcessing = Timer.builder("orders.events.consume.batch.latency")
+                .description("Time to apply a batch of stock events")
+                .register(meterRegistry);
+        this.lag = Timer.builder("orders.events.consume.lag")
+                .description("Time from the message timestamp, set by its producer, to its processing")
+                .withRegistry(meterRegistry);
+    }
+
+    /**
+     * What this throws is handed to {@link OrderEventRecoverer}: retried later, or dead-lettered if malformed.
+     * A depleted product fails its pending orders without going through the deduplicator, a redelivery finds none left.
+     */
+    @RabbitListener(queues = ExchangeQueues.ORDER_QUEUE_NAME,
+            autoStartup = "#{${orders.listener.auto-startup:true} and !${orders.listener.batch.enabled:false}}")
+    public void handleEvent(Message amqpMessage) throws IOException {
+        String routingKey = OrderEventRecoverer.routingKey(amqpMessage);
 
         log.info("📩 Received event: {}", routingKey);
 
-        ExchangeMessage event = objectMapper.readValue(rawMessage, ExchangeMessage.class);
-        Map<String, Object> payload = objectMapper.convertValue(
-                event.getPayload(),
-                new com.fasterxml.jackson.core.type.TypeReference<>() {}
-        );
+        boolean depleted = ITEM_DEPLETED.equals(routingKey);
+        OrderStatus newStatus = statusFor(routingKey);
+        if (newStatus == null && !depleted) {
+            log.warn("⚠️ Unhandled routing key: {}", routingKey);
+            return;
+        }
+        recordLag(amqpMessage, routingKey);
+        Timer.Sample sample = Timer.start();
+        try {
+            if (depleted) {
+                stockDepletionService.failPendingOrders(decodeDepletion(amqpMessage).itemId());
+                return;
+            }
+            StockEvent event = decode(amqpMessage);
+            String messageId = messageId(amqpMessage, event);
+            Set<String> processed = messageDeduplicator.processOnce(Collections.singletonList(messageId), skipped -> {
+                if (!MessageDeduplicator.isProcessed(skipped, messageId)) {
+                    updateOrderStatus(event.orderId(), newStatus);
+                }
+            });
+            if (!processed.isEmpty()) {
+                log.info("🔁 Skipped '{}' message {}, already processed", routingKey, messageId);
+            }
+        } finally {
+            sample.stop(processing.withTags(EventPublisher.ROUTING_KEY_TAG, routingKey));
+        }
+    }
 
-        Long orderId = extractOrderId(payload);
+    /**
+     * Batch mode: every status change of the batch is written in one statement, the container acknowledges
+     * the whole batch once this returns. Malformed messages are set aside so they cannot block the batch and
+     * dead-lettered once it is applied, already processed ones are skipped. Depleted products are handled once per distinct item after the status
+     * changes, each in its own chunked transactions.
+     */
+    @RabbitListener(queues = ExchangeQueues.ORDER_QUEUE_NAME,
+            containerFactory = RabbitMQConfig.BATCH_LISTENER_FACTORY,
+            autoStartup = "#{${orders.listener.auto-startup:true} and ${orders.listener.batch.enabled:false}}")
+    public void handleBatch(List<Message> amqpMessages) {
+        Timer.Sample sample = Timer.start();
+        try {
+            applyBatch(amqpMessages);
+        } finally {
+            sample.stop(batchProcessing);
+        }
+    }
 
-        switch (routingKey) {
-            case "product.stock.confirmed" -> updateOrderStatus(orderId, "CONFIRMED");
-            case "product.stock.insufficient" -> updateOrderStatus(orderId, "FAILED");
-            default -> log.warn("⚠️ Unhandled routing key: {}", routingKey);
+    private void applyBatch(List<Message> amqpMessages) {
+        List<StatusChange> changes = new ArrayList<>(amqpMessages.size());
+        Set<String> depletedItemIds = new LinkedHashSet<>();
+        List<MalformedMessage> malformed = new ArrayList<>();
+        for (Message amqpMessage : amqpMessages) {
+            String routingKey = OrderEventRecoverer.routingKey(amqpMessage);
+            boolean depleted = ITEM_DEPLETED.equals(routingKey);
+            OrderStatus newStatus = statusFor(routingKey);
+            if (newStatus == null && !depleted) {
+                log.warn("⚠️ Unhandled routing key: {}", routingKey);
+                continue;
+            }
+            recordLag(amqpMessage, routingKey);
+            try {
+                if (depleted) {
+                    depletedItemIds.add(decodeDepletion(amqpMessage).itemId());
+                    continue;
+                }
+                StockEvent event = decode(amqpMessage);
+                changes.add(new StatusChange(messageId(amqpMessage, event), event.orderId(), newStatus));
+            } catch (IOException | MissingDataException | IllegalArgumentException e) {
+                malformed.add(new MalformedMessage(amqpMessage, e));
+            }
         }
+
+        if (!changes.isEmpty()) {
+            Set<String> processed = messageDeduplicator.processOnce(
+                    changes.stream().map(StatusChange::messageId).toList(),
+                    skipped -> updateOrderStatuses(changes, skipped, amqpMessages.size()));
+            if (!processed.isEmpty()) {
+                log.info("🔁 Skipped {} already processed messages of a batch of {}", processed.size(), amqpMessages.size());
+            }
+        }
+        depletedItemIds.forEach(stockDepletionService::failPendingOrders);
+        // only once the rest went through: a failed batch goes to the recoverer whole, these included
+        malformed.forEach(message -> orderEventRecoverer.recover(message.message(), message.failure()));
     }
 
-    private Long extractOrderId(Map<String, Object> payload) {
-        if (!payload.containsKey("orderId")) {
-            throw new MissingDataException("Payload missing orderId");
+    private void updateOrderStatuses(List<StatusChange> changes, Set<String> processed, int batchSize) {
+        Map<Long, OrderStatus> statusByOrderId = new LinkedHashMap<>();
+        for (StatusChange change : changes) {
+            if (!MessageDeduplicator.isProcessed(processed, change.messageId())) {
+                // the first event for an order wins, as one message at a time: the next finds it no longer PENDING
+                statusByOrderId.putIfAbsent(change.orderId(), change.status());
+            }
+        }
+
+        if (statusByOrderId.isEmpty()) {
+            return;
+        }
+
+        // locked first, so the statuses read are the ones the update replaces: the client rollups need them
+        Map<Long, OrderStatus> applicable = new LinkedHashMap<>();
+        ClientOrderStatsChanges stats = new ClientOrderStatsChanges();
+        Set<String> clientIds = new LinkedHashSet<>();
+        for (Order order : orderRepository.findAndLockByIdIn(statusByOrderId.keySet())) {
+            OrderStatus newStatus = statusByOrderId.get(order.getId());
+            if (newStatus.canFollow(order.getStatus())) {
+                applicable.put(order.getId(), newStatus);
+                stats.moved(order.getClientId(), order.getCurrency(), order.getStatus(), newStatus.name());
+                clientIds.add(order.getClientId());
+            }
+        }
+
+        int updated = applicable.isEmpty() ? 0 : orderRepository.updateStatuses(applicable);
+        log.info("🔄 Updated {} of {} orders from a batch of {} events", updated, statusByOrderId.size(), batchSize);
+        if (updated > 0) {
+            clientOrderStatsService.apply(stats);
+            clientOrdersCache.evictAll(clientIds);
         }
-        return Long.valueOf(payload.get("orderId").toString());
     }
 
-    private void updateOrderStatus(Long orderId, String newStatus) {
-        orderRepository.findById(orderId).ifPresentOrElse(order -> {
-            log.info("🔄 Updating order {} to status '{}'", orderId, newStatus);
-            order.setStatus(newStatus);
-            orderRepository.save(order);
-        }, () -> log.warn("🚫 Order not found for ID: {}", orderId));
+    private void recordLag(Message amqpMessage, String routingKey) {
+        Date timestamp = amqpMessage.getMessageProperties().getTimestamp();
+        if (timestamp != null) {
+            lag.withTags(EventPublisher.ROUTING_KEY_TAG, routingKey)
+                    .record(Math.max(0, System.currentTimeMillis() - timestamp.getTime()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private StockEvent decode(Message amqpMessage) throws IOException {
+        return stockEventDecoder.decode(amqpMessage.getBody(), amqpMessage.getMessageProperties().getContentType());
+    }
+
+    private ItemDepletedEvent decodeDepletion(Message amqpMessage) throws IOException {
+        return stockEventDecoder.decodeDepletion(amqpMessage.getBody(), amqpMessage.getMessageProperties().getContentType());
+    }
+
+    /** The AMQP message-id when the producer set one, the event's correlationId otherwise. */
+    private static String messageId(Message amqpMessage, StockEvent event) {
+        String messageId = amqpMessage.getMessageProperties().getMessageId();
+        return messageId != null ? messageId : event.correlationId();
+    }
+
+    private static OrderStatus statusFor(String routingKey) {
+        return switch (routingKey) {
+            case "product.stock.confirmed" -> OrderStatus.CONFIRMED;
+            case "product.stock.insufficient" -> OrderStatus.FAILED;
+            default -> null;
+        };
+    }
+
+    /** Single compare-and-set statement: a concurrent cancel wins and the stock reply is dropped, nothing is locked. */
+    private void updateOrderStatus(Long orderId, OrderStatus newStatus) {
+        if (orderRepository.updateStatus(orderId, newStatus.name(), newStatus.predecessorNames()) > 0) {
+            log.info("🔄 Updated order {} to status '{}'", orderId, newStatus);
+            List<OrderOwner> owners = orderRepository.findOwnersByIdIn(List.of(orderId));
+            // stock replies only move PENDING orders, the compare-and-set tells which status was left
+            ClientOrderStatsChanges stats = new ClientOrderStatsChanges();
+            List<String> clientIds = new ArrayList<>(owners.size());
+            for (OrderOwner owner : owners) {
+                stats.moved(owner.clientId(), owner.currency(), OrderStatus.PENDING.name(), newStatus.name());
+                clientIds.add(owner.clientId());
+            }
+            clientOrderStatsService.apply(stats);
+            // the update has committed, the cached list of its client is now stale
+            clientOrdersCache.evictAll(clientIds);
+        } else {
+            log.warn("🚫 Order {} not found or no longer {}, not moved to '{}'",
+                    orderId, newStatus.predecessors(), newStatus);
+        }
+    }
+
+    private record StatusChange(String messageId, long orderId, OrderStatus status) {
+    }
+
+    private record MalformedMessage(Message message, Exception failure) {
     }
 }
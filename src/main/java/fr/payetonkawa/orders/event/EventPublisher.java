@@ -1,29 +1,161 @@
 package fr.payetonkawa.orders.event;
 
-import com.google.gson.Gson;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import fr.payetonkawa.orders.config.OutboxProperties;
+import fr.payetonkawa.orders.entity.OutboxEvent;
 import fr.payetonkawa.orders.messaging.ExchangeMessage;
 import fr.payetonkawa.orders.messaging.ExchangeQueues;
-import org.springframework.amqp.core.AmqpTemplate;
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Slf4j
 @Service
 public class EventPublisher {
 
-    private final AmqpTemplate amqpTemplate;
-    private final Gson gson = new Gson();
+    static final String ROUTING_KEY_TAG = "routing.key";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final OutboxProperties outboxProperties;
+
+    private final AtomicInteger inFlightConfirms = new AtomicInteger();
+    // tagged by routing key
+    private final Meter.MeterProvider<Counter> nacks;
+    private final Meter.MeterProvider<Counter> failures;
+    private final Meter.MeterProvider<Timer> publishLatency;
+
+    public EventPublisher(RabbitTemplate rabbitTemplate, OutboxProperties outboxProperties, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.outboxProperties = outboxProperties;
+        meterRegistry.gauge("orders.events.publish.inflight", inFlightConfirms);
+        this.nacks = Counter.builder("orders.events.publish.nacks")
+                .description("Messages the broker refused")
+                .withRegistry(meterRegistry);
+        this.failures = Counter.builder("orders.events.publish.failures")
+                .description("Messages that could not be sent or whose confirm failed")
+                .withRegistry(meterRegistry);
+        this.publishLatency = Timer.builder("orders.events.publish.latency")
+                .description("Time from send to broker confirm")
+                .withRegistry(meterRegistry);
+    }
 
-    public EventPublisher(AmqpTemplate amqpTemplate) {
-        this.amqpTemplate = amqpTemplate;
+    /** Stamps the exchange metadata on the message and returns its UTF-8 JSON wire body, written in a single pass. */
+    public byte[] serialize(String routingKey, ExchangeMessage message) {
+        return serialize(routingKey, message, MessageCodec.JSON);
     }
 
-    public void sendEvent(String routingKey, ExchangeMessage message) {
+    /** Same as {@link #serialize(String, ExchangeMessage)}, encoded with the given codec. */
+    public byte[] serialize(String routingKey, ExchangeMessage message, MessageCodec codec) {
         message.setExchangeId(ExchangeQueues.EXCHANGE_NAME);
         message.setRoutingKey(routingKey);
         message.setType(routingKey);
-        amqpTemplate.convertAndSend(ExchangeQueues.EXCHANGE_NAME, routingKey, gson.toJson(message));
-        log.info("📤 Publishing to exchange '{}' with routingKey '{}' and payload '{}'",
-                ExchangeQueues.EXCHANGE_NAME, routingKey, gson.toJson(message));
+
+        try {
+            return codec.writer().writeValueAsBytes(message);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Publishes already serialized events back to back, then waits for all asynchronous broker confirms.
+     * Throws if any message is nacked or not confirmed within the configured timeout.
+     */
+    public void publishConfirmed(List<OutboxEvent> events) {
+        List<CompletableFuture<CorrelationData.Confirm>> confirms = new ArrayList<>(events.size());
+        for (OutboxEvent event : events) {
+            confirms.add(sendCorrelated(event));
+        }
+
+        awaitConfirms(confirms);
+        log.info("📤 Published {} outbox events to exchange '{}'", events.size(), ExchangeQueues.EXCHANGE_NAME);
+    }
+
+    private CompletableFuture<CorrelationData.Confirm> sendCorrelated(OutboxEvent event) {
+        CorrelationData correlation = new CorrelationData(String.valueOf(event.getId()));
+        long start = System.nanoTime();
+        inFlightConfirms.incrementAndGet();
+        String routingKey = event.getRoutingKey();
+        CompletableFuture<CorrelationData.Confirm> confirm = correlation.getFuture().whenComplete((result, error) -> {
+            inFlightConfirms.decrementAndGet();
+            publishLatency.withTags(ROUTING_KEY_TAG, routingKey).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            if (error != null) {
+                failures.withTags(ROUTING_KEY_TAG, routingKey).increment();
+            } else if (!result.isAck()) {
+                nacks.withTags(ROUTING_KEY_TAG, routingKey).increment();
+            }
+        });
+        MessageCodec codec = MessageCodec.forContentType(event.getContentType());
+        Message message = toMessage(event.getPayload(), codec);
+        // when the event happened, so consumers can measure their lag behind it
+        message.getMessageProperties().setTimestamp(event.getCreatedAt());
+        try {
+            rabbitTemplate.send(ExchangeQueues.EXCHANGE_NAME, event.getRoutingKey(), message, correlation);
+        } catch (AmqpException e) {
+            correlation.getFuture().completeExceptionally(e);
+            throw e;
+        }
+        logPublished(event.getRoutingKey(), event.getPayload(), codec);
+        return confirm;
+    }
+
+    private void awaitConfirms(List<CompletableFuture<CorrelationData.Confirm>> confirms) {
+        try {
+            CompletableFuture.allOf(confirms.toArray(CompletableFuture[]::new))
+                    .get(outboxProperties.confirmTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new AmqpTimeoutException("Broker did not confirm " + confirms.size() + " messages in time", e);
+        } catch (ExecutionException e) {
+            throw new AmqpException("Publishing failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmqpException("Interrupted while waiting for confirms", e);
+        }
+
+        for (CompletableFuture<CorrelationData.Confirm> confirm : confirms) {
+            CorrelationData.Confirm result = confirm.join();
+            if (!result.isAck()) {
+                throw new AmqpException("Broker nacked a message: " + result.getReason());
+            }
+        }
+    }
+
+    private void logPublished(String routingKey, byte[] body, MessageCodec codec) {
+        if (log.isDebugEnabled()) {
+            log.debug("📤 Publishing to exchange '{}' with routingKey '{}' and payload '{}'",
+                    ExchangeQueues.EXCHANGE_NAME, routingKey,
+                    codec.isText() ? new String(body, StandardCharsets.UTF_8) : body.length + " bytes of " + codec.contentType());
+        }
+    }
+
+    private static Message toMessage(byte[] body, MessageCodec codec) {
+        // JSON keeps the properties of convertAndSend(String) so consumers see an unchanged wire format
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(codec.contentType());
+        if (codec.isText()) {
+            properties.setContentEncoding(StandardCharsets.UTF_8.name());
+        }
+        properties.setContentLength(body.length);
+        return new Message(body, properties);
     }
 }
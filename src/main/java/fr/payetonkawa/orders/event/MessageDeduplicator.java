@@ -0,0 +1,103 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.MessageDedupProperties;
+import fr.payetonkawa.orders.entity.ProcessedMessage;
+import fr.payetonkawa.orders.messaging.RotatingBloomFilter;
+import fr.payetonkawa.orders.repository.ProcessedMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Applies each consumed message at most once. The ids of the processed messages are recorded in
+ * {@code processed_messages} in the same transaction as their effect, so the table is the source of truth.
+ * It is only read for ids the in-memory {@link RotatingBloomFilter} has probably seen, which makes a redelivery
+ * storm cost one lookup per batch while fresh messages (nearly) never touch it. An id recorded without the filter
+ * knowing it, by another instance or before a restart, shows up as a key conflict and the ids are then checked.
+ */
+@Slf4j
+@Component
+public class MessageDeduplicator {
+
+    private final ProcessedMessageRepository processedMessageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageDedupProperties properties;
+    private final RotatingBloomFilter recentIds;
+
+    public MessageDeduplicator(ProcessedMessageRepository processedMessageRepository,
+                               TransactionTemplate transactionTemplate,
+                               MessageDedupProperties properties) {
+        this.processedMessageRepository = processedMessageRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.properties = properties;
+        this.recentIds = new RotatingBloomFilter(properties.recentIds(), properties.falsePositiveRate());
+    }
+
+    /**
+     * Runs {@code work} once for these message ids and records them, in one transaction. The work is handed the
+     * ids already processed so it skips their messages; those ids are returned too. Null ids (messages carrying
+     * no id) are never deduplicated, when there is no other id the work still runs in a transaction of its own:
+     * it relies on one (row locks, writes that must commit together).
+     */
+    public Set<String> processOnce(Collection<String> messageIds, Consumer<Set<String>> work) {
+        Set<String> ids = new LinkedHashSet<>();
+        messageIds.stream().filter(Objects::nonNull).forEach(ids::add);
+        if (ids.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> work.accept(Set.of()));
+            return Set.of();
+        }
+
+        Set<String> processed = findProcessed(ids.stream().filter(recentIds::mightContain).toList());
+        try {
+            apply(ids, processed, work);
+        } catch (DataIntegrityViolationException e) {
+            log.info("🔁 Message ids recorded elsewhere, checking all {} of them", ids.size());
+            processed = findProcessed(ids);
+            apply(ids, processed, work);
+        }
+        ids.forEach(recentIds::put);
+        return processed;
+    }
+
+    @Scheduled(fixedDelayString = "${orders.listener.dedup.prune-interval-ms:3600000}")
+    public void prune() {
+        Timestamp before = new Timestamp(System.currentTimeMillis() - properties.retention().toMillis());
+        int pruned = processedMessageRepository.deleteProcessedBefore(before);
+        if (pruned > 0) {
+            log.info("🧹 Pruned {} processed message ids", pruned);
+        }
+    }
+
+    private void apply(Set<String> ids, Set<String> processed, Consumer<Set<String>> work) {
+        transactionTemplate.executeWithoutResult(status -> {
+            // flushed first: a conflicting id fails here, before the work has written anything
+            processedMessageRepository.saveAllAndFlush(ids.stream()
+                    .filter(id -> !processed.contains(id))
+                    .map(ProcessedMessage::new)
+                    .toList());
+            work.accept(processed);
+        });
+    }
+
+    private Set<String> findProcessed(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return Set.of();
+        }
+        return new HashSet<>(processedMessageRepository.findExistingIds(ids));
+    }
+
+    // immutable sets throw on contains(null), messages without id are never processed already
+    static boolean isProcessed(Set<String> processed, String messageId) {
+        return messageId != null && processed.contains(messageId);
+    }
+}
@@ -0,0 +1,33 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.entity.OutboxEvent;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import fr.payetonkawa.orders.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Records order events in the caller's transaction, {@link OutboxRelay} publishes them once committed.
+ */
+@Component
+@RequiredArgsConstructor
+public class OrderEventOutbox {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventPublisher eventPublisher;
+    private final OrderEventProperties orderEventProperties;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void enqueue(String routingKey, ExchangeMessage message) {
+        MessageCodec codec = orderEventProperties.codec();
+        OutboxEvent event = new OutboxEvent();
+        event.setRoutingKey(routingKey);
+        event.setContentType(codec.contentType());
+        event.setPayload(eventPublisher.serialize(routingKey, message, codec));
+        outboxEventRepository.save(event);
+    }
+}
@@ -0,0 +1,109 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.ListenerRetryProperties;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Takes over the {@code service.order.queue} messages the listener failed on, instead of a requeue that would
+ * redeliver them at once, in a loop. A transient failure is parked in the delay queue of its next retry, which
+ * sends it back to the order queue once expired. Malformed messages, and messages out of retries, are moved to
+ * {@link ExchangeQueues#ORDER_DEAD_LETTER_QUEUE_NAME}. Either way the original is acknowledged and the consumer
+ * moves on to the next message.
+ */
+@Slf4j
+@Component
+public class OrderEventRecoverer implements MessageBatchRecoverer {
+
+    /** Routing key the message was first published with, the delay queues reroute it by queue name. */
+    public static final String ROUTING_KEY_HEADER = "x-orders-routing-key";
+    public static final String ATTEMPTS_HEADER = "x-orders-attempts";
+    public static final String EXCEPTION_HEADER = "x-orders-exception";
+
+    private final RabbitTemplate rabbitTemplate;
+    private final List<Duration> delays;
+    private final Counter retried;
+    private final Counter deadLettered;
+
+    public OrderEventRecoverer(RabbitTemplate rabbitTemplate, ListenerRetryProperties properties, MeterRegistry meterRegistry) {
+        this.rabbitTemplate = rabbitTemplate;
+        this.delays = properties.delays();
+        this.retried = meterRegistry.counter("orders.events.consume.retried");
+        this.deadLettered = meterRegistry.counter("orders.events.consume.dead_lettered");
+    }
+
+    /** The routing key a stock event was published with, whether it is a first delivery or a retry. */
+    public static String routingKey(Message message) {
+        Object original = message.getMessageProperties().getHeader(ROUTING_KEY_HEADER);
+        return original != null ? original.toString() : message.getMessageProperties().getReceivedRoutingKey();
+    }
+
+    public static int attempts(Message message) {
+        Object attempts = message.getMessageProperties().getHeader(ATTEMPTS_HEADER);
+        return attempts instanceof Number number ? number.intValue() : 0;
+    }
+
+    @Override
+    public void recover(Message message, Throwable cause) {
+        Throwable failure = listenerFailure(cause);
+        String routingKey = routingKey(message);
+        int attempts = attempts(message);
+
+        MessageProperties properties = message.getMessageProperties();
+        properties.setHeader(ROUTING_KEY_HEADER, routingKey);
+        properties.setHeader(EXCEPTION_HEADER, failure.getClass().getSimpleName() + ": " + failure.getMessage());
+
+        if (isPoison(failure) || attempts >= delays.size()) {
+            rabbitTemplate.send("", ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, message);
+            deadLettered.increment();
+            log.warn("🚫 Dead-lettered '{}' event after {} retries: {}", routingKey, attempts, failure.getMessage());
+            return;
+        }
+
+        Duration delay = delays.get(attempts);
+        properties.setHeader(ATTEMPTS_HEADER, attempts + 1);
+        rabbitTemplate.send("", ExchangeQueues.orderRetryQueueName(delay.toMillis()), message);
+        retried.increment();
+        log.warn("⚠️ Retrying '{}' event in {} ms (retry {} of {}): {}",
+                routingKey, delay.toMillis(), attempts + 1, delays.size(), failure.getMessage());
+    }
+
+    /** A failed batch is rolled back as a whole, each of its messages is retried on its own. */
+    @Override
+    public void recover(List<Message> messages, Throwable cause) {
+        for (Message message : messages) {
+            recover(message, cause);
+        }
+    }
+
+    // retrying cannot fix the message itself
+    private static boolean isPoison(Throwable failure) {
+        return failure instanceof MissingDataException
+                || failure instanceof IOException
+                || failure instanceof IllegalArgumentException
+                || failure instanceof MessageConversionException;
+    }
+
+    // the container wraps what the listener threw in a ListenerExecutionFailedException
+    private static Throwable listenerFailure(Throwable cause) {
+        Throwable failure = cause;
+        while (failure instanceof ListenerExecutionFailedException && failure.getCause() != null) {
+            failure = failure.getCause();
+        }
+        return failure;
+    }
+}
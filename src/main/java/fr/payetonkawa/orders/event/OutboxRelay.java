@@ -0,0 +1,61 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.OutboxProperties;
+import fr.payetonkawa.orders.entity.OutboxEvent;
+import fr.payetonkawa.orders.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * Drains the order outbox in batches. A batch is marked dispatched only once the broker confirmed it,
+ * so a failure leaves the rows in place for the next run (at-least-once delivery).
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final EventPublisher eventPublisher;
+    private final TransactionTemplate transactionTemplate;
+    private final OutboxProperties properties;
+
+    @Scheduled(fixedDelayString = "${orders.outbox.relay-interval-ms:200}")
+    public void relay() {
+        try {
+            int dispatched;
+            do {
+                dispatched = transactionTemplate.execute(status -> dispatchBatch());
+            } while (dispatched == properties.batchSize());
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Outbox relay interrupted, pending events will be retried: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${orders.outbox.prune-interval-ms:3600000}")
+    public void prune() {
+        Timestamp before = new Timestamp(System.currentTimeMillis() - properties.retention().toMillis());
+        int pruned = outboxEventRepository.deleteDispatchedBefore(before);
+        if (pruned > 0) {
+            log.info("🧹 Pruned {} dispatched outbox events", pruned);
+        }
+    }
+
+    private int dispatchBatch() {
+        List<OutboxEvent> batch = outboxEventRepository.lockNextBatch(properties.batchSize());
+        if (batch.isEmpty()) {
+            return 0;
+        }
+        eventPublisher.publishConfirmed(batch);
+        outboxEventRepository.markDispatched(
+                batch.stream().map(OutboxEvent::getId).toList(),
+                new Timestamp(System.currentTimeMillis()));
+        return batch.size();
+    }
+}
@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.exception;
+
+public class StatusTransitionException extends RuntimeException {
+    public StatusTransitionException(String from, String to) {
+        super("Order cannot go from " + from + " to " + to);
+    }
+}
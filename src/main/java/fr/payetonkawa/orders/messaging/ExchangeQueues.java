@@ -3,4 +3,10 @@ package fr.payetonkawa.orders.messaging;
 public class ExchangeQueues {
     public static final String EXCHANGE_NAME = "global.events";
     public static final String ORDER_QUEUE_NAME = "service.order.queue";
+    public static final String ORDER_DEAD_LETTER_QUEUE_NAME = ORDER_QUEUE_NAME + ".dlq";
+
+    /** Delay queue a failed message waits in before going back to {@link #ORDER_QUEUE_NAME}, named by its delay. */
+    public static String orderRetryQueueName(long delayMillis) {
+        return ORDER_QUEUE_NAME + ".retry." + delayMillis + "ms";
+    }
 }
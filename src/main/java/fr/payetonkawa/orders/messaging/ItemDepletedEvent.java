@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+/**
+ * The fields of a {@code product.stock.depleted} exchange message this service acts on.
+ */
+public record ItemDepletedEvent(String correlationId, String itemId) {
+}
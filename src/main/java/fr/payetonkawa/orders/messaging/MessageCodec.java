@@ -0,0 +1,73 @@
+package fr.payetonkawa.orders.messaging;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.amqp.core.MessageProperties;
+
+import java.util.Locale;
+
+/**
+ * Wire formats of the exchange messages, told apart by the AMQP {@code content_type} property. All of them carry
+ * the same {@link ExchangeMessage} tree, so a service can move to a binary format once its consumers read it.
+ */
+public enum MessageCodec {
+
+    /** Today's format, sent as {@code text/plain} like {@code convertAndSend(String)} does. */
+    JSON(MessageProperties.CONTENT_TYPE_TEXT_PLAIN, new JsonFactory()),
+    CBOR("application/cbor", new CBORFactory()),
+    SMILE("application/x-jackson-smile", new SmileFactory());
+
+    private final String contentType;
+    private final JsonFactory factory;
+    private final ObjectWriter writer;
+
+    MessageCodec(String contentType, JsonFactory factory) {
+        this.contentType = contentType;
+        this.factory = factory;
+        // null fields are left out, as the previous Gson encoding did
+        this.writer = new ObjectMapper(factory)
+                .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+                .writerFor(ExchangeMessage.class);
+    }
+
+    public String contentType() {
+        return contentType;
+    }
+
+    public boolean isText() {
+        return this == JSON;
+    }
+
+    /** Streaming factory for this format, parsers it creates expose the same tokens whatever the encoding. */
+    public JsonFactory factory() {
+        return factory;
+    }
+
+    /** Writer built once, the payload records' serializers are resolved on first use then cached. */
+    public ObjectWriter writer() {
+        return writer;
+    }
+
+    /**
+     * Codec of a received message. No content type, {@code application/octet-stream} (what Spring AMQP reports
+     * when the header is missing) and the JSON types all mean JSON, which is what every producer sent so far.
+     */
+    public static MessageCodec forContentType(String contentType) {
+        if (contentType == null) {
+            return JSON;
+        }
+        int parameters = contentType.indexOf(';');
+        String mimeType = (parameters < 0 ? contentType : contentType.substring(0, parameters)).trim().toLowerCase(Locale.ROOT);
+        return switch (mimeType) {
+            case "", MessageProperties.CONTENT_TYPE_TEXT_PLAIN, MessageProperties.CONTENT_TYPE_JSON,
+                 MessageProperties.CONTENT_TYPE_BYTES -> JSON;
+            case "application/cbor" -> CBOR;
+            case "application/x-jackson-smile", "application/smile" -> SMILE;
+            default -> throw new IllegalArgumentException("Unsupported content type: " + contentType);
+        };
+    }
+}
@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.List;
+
+/** Payload of {@code order.cancelled}. */
+public record OrderCancelled(long orderId, String clientId, List<OrderLine> items) {
+}
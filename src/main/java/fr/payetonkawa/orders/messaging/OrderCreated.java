@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.List;
+
+/** Payload of {@code order.created}. */
+public record OrderCreated(long orderId, String clientId, List<OrderLine> items) {
+}
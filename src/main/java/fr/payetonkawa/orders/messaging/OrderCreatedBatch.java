@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.List;
+
+/** Payload of {@code order.created.batch}, one entry per order created by the same bulk import chunk. */
+public record OrderCreatedBatch(List<OrderCreated> orders) {
+}
@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.List;
+
+/** Payload of {@code order.deleted}. */
+public record OrderDeleted(long orderId, List<OrderLine> items) {
+}
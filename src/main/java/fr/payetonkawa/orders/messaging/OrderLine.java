@@ -0,0 +1,25 @@
+package fr.payetonkawa.orders.messaging;
+
+import fr.payetonkawa.orders.entity.OrderItem;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** One order line as published in order events: {@code {"itemId": ..., "quantity": ...}}. */
+public record OrderLine(String itemId, int quantity) {
+
+    public static OrderLine of(OrderItem item) {
+        return new OrderLine(item.getItemId(), item.getQuantity());
+    }
+
+    public static List<OrderLine> of(List<OrderItem> items) {
+        if (items == null) {
+            return List.of();
+        }
+        List<OrderLine> lines = new ArrayList<>(items.size());
+        for (OrderItem item : items) {
+            lines.add(of(item));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,29 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.List;
+
+/**
+ * Payload of {@code order.updated}. The full format carries {@code previousItems} and {@code items};
+ * the delta format carries {@code "format": "delta"} and {@code changes} instead. Absent fields are not written.
+ */
+public record OrderUpdated(long orderId,
+                           String clientId,
+                           String format,
+                           List<OrderLine> previousItems,
+                           List<OrderLine> items,
+                           List<ItemDelta> changes) {
+
+    public static final String DELTA_FORMAT = "delta";
+
+    public static OrderUpdated full(long orderId, String clientId, List<OrderLine> previousItems, List<OrderLine> items) {
+        return new OrderUpdated(orderId, clientId, null, previousItems, items, null);
+    }
+
+    public static OrderUpdated delta(long orderId, String clientId, List<ItemDelta> changes) {
+        return new OrderUpdated(orderId, clientId, DELTA_FORMAT, null, null, changes);
+    }
+
+    /** Quantity change of one itemId, negative when lines were removed. */
+    public record ItemDelta(String itemId, int delta) {
+    }
+}
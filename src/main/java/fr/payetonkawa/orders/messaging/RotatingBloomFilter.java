@@ -0,0 +1,104 @@
+package fr.payetonkawa.orders.messaging;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, approximate set of the most recently seen ids. Ids go into the current Bloom filter, which replaces
+ * the previous one once it holds {@code capacity} ids: the last {@code capacity} ids are always reported present,
+ * older ones are forgotten, and an id never seen is reported present with about twice the configured rate.
+ * Lock-free except for the rotation itself, memory stays at two bit arrays whatever the traffic.
+ */
+public class RotatingBloomFilter {
+
+    private final int capacity;
+    private final int bits;
+    private final int hashes;
+
+    private volatile Generation current;
+    private volatile Generation previous;
+
+    public RotatingBloomFilter(int capacity, double falsePositiveRate) {
+        if (capacity <= 0 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Capacity must be positive and the false positive rate within (0, 1)");
+        }
+        this.capacity = capacity;
+        double ln2 = Math.log(2);
+        this.bits = (int) Math.min(Integer.MAX_VALUE - 64, Math.ceil(-capacity * Math.log(falsePositiveRate) / (ln2 * ln2)));
+        this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * ln2));
+        this.current = new Generation(bits);
+        this.previous = new Generation(bits);
+    }
+
+    public boolean mightContain(String id) {
+        long hash = hash(id);
+        return current.contains(hash) || previous.contains(hash);
+    }
+
+    public void put(String id) {
+        Generation generation = current;
+        if (generation.add(hash(id)) && generation.size.incrementAndGet() >= capacity) {
+            rotate(generation);
+        }
+    }
+
+    private synchronized void rotate(Generation full) {
+        if (current == full) {
+            previous = full;
+            current = new Generation(bits);
+        }
+    }
+
+    private final class Generation {
+
+        private final AtomicLongArray words;
+        private final AtomicInteger size = new AtomicInteger();
+
+        private Generation(int bits) {
+            this.words = new AtomicLongArray((bits + 63) / 64);
+        }
+
+        /** Returns whether a bit was flipped, i.e. whether the id was new to this generation. */
+        private boolean add(long hash) {
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash, i);
+                long mask = 1L << bit;
+                long word = words.getAndAccumulate(bit >>> 6, mask, (value, m) -> value | m);
+                added |= (word & mask) == 0;
+            }
+            return added;
+        }
+
+        private boolean contains(long hash) {
+            for (int i = 0; i < hashes; i++) {
+                int bit = index(hash, i);
+                if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    // double hashing over both halves of one 64-bit hash, as Guava's BloomFilter does
+    private int index(long hash, int i) {
+        int combined = (int) hash + i * (int) (hash >>> 32);
+        return (combined & Integer.MAX_VALUE) % bits;
+    }
+
+    private static long hash(String id) {
+        // FNV-1a, then the murmur3 finalizer to spread its weak low bits
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < id.length(); i++) {
+            h ^= id.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
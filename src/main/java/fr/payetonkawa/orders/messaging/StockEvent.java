@@ -0,0 +1,7 @@
+package fr.payetonkawa.orders.messaging;
+
+/**
+ * The only fields of a {@code product.stock.*} exchange message this service acts on.
+ */
+public record StockEvent(String correlationId, long orderId) {
+}
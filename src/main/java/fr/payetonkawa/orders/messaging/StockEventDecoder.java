@@ -0,0 +1,105 @@
+package fr.payetonkawa.orders.messaging;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads a {@code product.stock.*} message body in a single streaming pass, straight from the AMQP bytes.
+ * Only {@code correlationId}, {@code payload.orderId} and {@code payload.itemId} are materialized, everything
+ * else is skipped.
+ * The body is read with the {@link MessageCodec} its {@code content_type} names, JSON by default.
+ */
+@Component
+public class StockEventDecoder {
+
+    public StockEvent decode(byte[] body) throws IOException {
+        return decode(body, MessageCodec.JSON);
+    }
+
+    public StockEvent decode(byte[] body, String contentType) throws IOException {
+        return decode(body, MessageCodec.forContentType(contentType));
+    }
+
+    public StockEvent decode(byte[] body, MessageCodec codec) throws IOException {
+        Fields fields = read(body, codec);
+        if (fields.orderId == null) {
+            throw new MissingDataException("Payload missing orderId");
+        }
+        return new StockEvent(fields.correlationId, fields.orderId);
+    }
+
+    /** {@code product.stock.depleted} names the product, not an order. */
+    public ItemDepletedEvent decodeDepletion(byte[] body, String contentType) throws IOException {
+        Fields fields = read(body, MessageCodec.forContentType(contentType));
+        if (fields.itemId == null) {
+            throw new MissingDataException("Payload missing itemId");
+        }
+        return new ItemDepletedEvent(fields.correlationId, fields.itemId);
+    }
+
+    private static Fields read(byte[] body, MessageCodec codec) throws IOException {
+        try (JsonParser parser = codec.factory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new JsonParseException(parser, "Expected an exchange message object");
+            }
+
+            Fields fields = new Fields();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "correlationId" -> fields.correlationId =
+                            scalar(parser, field, value) == JsonToken.VALUE_NULL ? null : parser.getText();
+                    case "payload" -> readPayload(parser, value, fields);
+                    default -> parser.skipChildren();
+                }
+            }
+            return fields;
+        }
+    }
+
+    private static void readPayload(JsonParser parser, JsonToken payload, Fields fields) throws IOException {
+        if (payload != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            switch (field) {
+                case "orderId" -> fields.orderId = switch (scalar(parser, field, value)) {
+                    case VALUE_NUMBER_INT -> parser.getLongValue();
+                    // some producers send ids as strings
+                    case VALUE_STRING -> Long.valueOf(parser.getText());
+                    default -> null;
+                };
+                case "itemId" -> fields.itemId =
+                        scalar(parser, field, value) == JsonToken.VALUE_STRING ? parser.getText() : null;
+                default -> parser.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Ids are scalars. Read in place of an object or array, the nested fields would be taken for the enclosing
+     * ones, so the message is rejected as malformed.
+     */
+    private static JsonToken scalar(JsonParser parser, String field, JsonToken value) throws JsonParseException {
+        if (value.isStructStart()) {
+            throw new JsonParseException(parser, field + " must be a scalar value");
+        }
+        return value;
+    }
+
+    private static final class Fields {
+        private String correlationId;
+        private Long orderId;
+        private String itemId;
+    }
+}
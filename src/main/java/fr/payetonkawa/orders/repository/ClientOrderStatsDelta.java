@@ -0,0 +1,12 @@
+package fr.payetonkawa.orders.repository;
+
+import java.sql.Timestamp;
+
+/**
+ * Change to the row of {@code client_order_stats} of a client and currency: counts and amount (minor units of
+ * that currency) are added to the stored ones, {@code lastOrderAt} only moves the stored time forward,
+ * null leaves it as is.
+ */
+public record ClientOrderStatsDelta(String clientId, String currency, long pending, long confirmed, long failed, long cancelled,
+                                    long amount, Timestamp lastOrderAt) {
+}
@@ -0,0 +1,16 @@
+package fr.payetonkawa.orders.repository;
+
+import fr.payetonkawa.orders.entity.ClientOrderStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface ClientOrderStatsRepository
+        extends JpaRepository<ClientOrderStats, ClientOrderStats.Key>, ClientOrderStatsUpsertRepository {
+
+    /** One row per currency the client ordered in, served by the primary key prefix. */
+    List<ClientOrderStats> findAllByClientIdOrderByCurrency(String clientId);
+
+}
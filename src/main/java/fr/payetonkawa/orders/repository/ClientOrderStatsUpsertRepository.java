@@ -0,0 +1,14 @@
+package fr.payetonkawa.orders.repository;
+
+import java.util.List;
+
+public interface ClientOrderStatsUpsertRepository {
+
+    /**
+     * Adds the deltas to their (client, currency) rows: missing rows are created empty, then one
+     * {@code UPDATE ... SET col = col + CASE WHEN client_id = ... AND currency = ... END} applies every delta.
+     * One delta per row, in (client id, currency) order so concurrent writers lock rows alike.
+     */
+    void applyDeltas(List<ClientOrderStatsDelta> deltas);
+
+}
@@ -0,0 +1,113 @@
+package fr.payetonkawa.orders.repository;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+@RequiredArgsConstructor
+public class ClientOrderStatsUpsertRepositoryImpl implements ClientOrderStatsUpsertRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public void applyDeltas(List<ClientOrderStatsDelta> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        // rows start at zero; a concurrent first write for the same row waits, then finds the row there
+        List<Object> parameters = new ArrayList<>(deltas.size() * 2);
+        StringBuilder insert = new StringBuilder(160 + deltas.size() * 32)
+                .append("insert into client_order_stats (client_id, currency, pending_count, confirmed_count,")
+                .append(" failed_count, cancelled_count, total_amount) values ");
+        for (int i = 0; i < deltas.size(); i++) {
+            ClientOrderStatsDelta delta = deltas.get(i);
+            insert.append(i == 0 ? "(" : ", (").append(bind(parameters, delta.clientId()))
+                    .append(", ").append(bind(parameters, delta.currency())).append(", 0, 0, 0, 0, 0)");
+        }
+        insert.append(" on conflict do nothing");
+        execute(insert, parameters);
+
+        parameters.clear();
+        List<String> assignments = new ArrayList<>(6);
+        addIncrement(assignments, parameters, deltas, "pending_count", ClientOrderStatsDelta::pending);
+        addIncrement(assignments, parameters, deltas, "confirmed_count", ClientOrderStatsDelta::confirmed);
+        addIncrement(assignments, parameters, deltas, "failed_count", ClientOrderStatsDelta::failed);
+        addIncrement(assignments, parameters, deltas, "cancelled_count", ClientOrderStatsDelta::cancelled);
+        addIncrement(assignments, parameters, deltas, "total_amount", ClientOrderStatsDelta::amount);
+        addLastOrderAt(assignments, parameters, deltas);
+        if (assignments.isEmpty()) {
+            return;
+        }
+
+        StringBuilder update = new StringBuilder(128 + deltas.size() * 160)
+                .append("update client_order_stats set ").append(String.join(", ", assignments))
+                .append(" where (client_id, currency) in (");
+        for (int i = 0; i < deltas.size(); i++) {
+            ClientOrderStatsDelta delta = deltas.get(i);
+            update.append(i == 0 ? "(" : ", (").append(bind(parameters, delta.clientId()))
+                    .append(", ").append(bind(parameters, delta.currency())).append(")");
+        }
+        update.append(")");
+        execute(update, parameters);
+    }
+
+    /**
+     * {@code column = column + case when <row> then <delta> ... else 0 end}, over the non-zero deltas.
+     * Values are cast: H2 cannot type a bare parameter in a CASE branch.
+     */
+    private static void addIncrement(List<String> assignments, List<Object> parameters,
+                                     List<ClientOrderStatsDelta> deltas, String column,
+                                     ToLongFunction<ClientOrderStatsDelta> value) {
+        StringBuilder cases = new StringBuilder();
+        for (ClientOrderStatsDelta delta : deltas) {
+            long increment = value.applyAsLong(delta);
+            if (increment != 0) {
+                cases.append(" when ").append(row(parameters, delta))
+                        .append(" then cast(").append(bind(parameters, increment)).append(" as bigint)");
+            }
+        }
+        if (!cases.isEmpty()) {
+            assignments.add(column + " = " + column + " + case" + cases + " else 0 end");
+        }
+    }
+
+    /** Only moves forward, greatest() skipping the null of a new row; clients without a new order keep theirs. */
+    private static void addLastOrderAt(List<String> assignments, List<Object> parameters,
+                                       List<ClientOrderStatsDelta> deltas) {
+        StringBuilder cases = new StringBuilder();
+        for (ClientOrderStatsDelta delta : deltas) {
+            if (delta.lastOrderAt() != null) {
+                cases.append(" when ").append(row(parameters, delta))
+                        .append(" then greatest(last_order_at, cast(").append(bind(parameters, delta.lastOrderAt()))
+                        .append(" as timestamp(6)))");
+            }
+        }
+        if (!cases.isEmpty()) {
+            assignments.add("last_order_at = case" + cases + " else last_order_at end");
+        }
+    }
+
+    private static String row(List<Object> parameters, ClientOrderStatsDelta delta) {
+        return "client_id = " + bind(parameters, delta.clientId()) + " and currency = " + bind(parameters, delta.currency());
+    }
+
+    private void execute(StringBuilder sql, List<Object> parameters) {
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        query.executeUpdate();
+    }
+
+    private static String bind(List<Object> parameters, Object value) {
+        parameters.add(value);
+        return "?" + parameters.size();
+    }
+}
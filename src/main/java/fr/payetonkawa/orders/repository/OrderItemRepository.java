@@ -1,9 +1,15 @@
 package fr.payetonkawa.orders.repository;
 
 import fr.payetonkawa.orders.entity.OrderItem;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -11,4 +17,21 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
 
     List<OrderItem> findByItemId(String itemId);
 
+    /**
+     * Next chunk of the orders in {@code status} holding a line of the product, by ascending id after
+     * {@code afterId}: read off the (item_id, order_id) index, joined to the orders on their primary key.
+     */
+    @Query("select distinct i.order.id from OrderItem i where i.itemId = :itemId"
+            + " and i.order.status = :status and i.order.id > :afterId order by i.order.id")
+    List<Long> findOrderIdsByItemIdAfter(@Param("itemId") String itemId, @Param("status") String status,
+                                         @Param("afterId") long afterId, Limit limit);
+
+    /** Moves the lines of the orders to {@code order_items_archive}, {@code before} bounds the partitions scanned. */
+    @Modifying
+    @Query(value = "with moved as (delete from order_items where order_created_at < :before and order_id in (:ids)"
+            + " returning id, item_id, quantity, unit_price_minor, order_id, order_created_at)"
+            + " insert into order_items_archive (id, item_id, quantity, unit_price_minor, order_id, order_created_at)"
+            + " select id, item_id, quantity, unit_price_minor, order_id, order_created_at from moved", nativeQuery = true)
+    int archiveByOrderIdIn(@Param("ids") Collection<Long> ids, @Param("before") Timestamp before);
+
 }
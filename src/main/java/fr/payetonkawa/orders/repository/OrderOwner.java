@@ -0,0 +1,5 @@
+package fr.payetonkawa.orders.repository;
+
+/** Client and currency of an order: the row of {@code client_order_stats} it counts in. */
+public record OrderOwner(String clientId, String currency) {
+}
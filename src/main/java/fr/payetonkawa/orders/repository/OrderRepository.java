@@ -1,14 +1,121 @@
 package fr.payetonkawa.orders.repository;
 
 import fr.payetonkawa.orders.entity.Order;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
+/**
+ * Orders are partitioned by month of {@code created_at} (V9). Only the queries bounded on it skip partitions: the
+ * keyset pages and the archival. Lookups and writes by id alone, the ones below as well as the inherited ones and
+ * Hibernate's version-checked updates and deletes, probe the primary key of every partition; stock events and the
+ * REST API only carry the id. {@code OrderArchiver} keeps that number of partitions bounded.
+ */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderStatusBatchRepository {
 
     List<Order> findAllByClientId(String clientId);
 
+    /** Loads the order and its lines in a single join, for paths that read or rewrite the items. */
+    @EntityGraph(attributePaths = "items")
+    Optional<Order> findWithItemsById(Long id);
+
+    /**
+     * Status-only compare-and-set, no aggregate is loaded: the row is only written while its status is one of
+     * {@code expected}. Returns the number of rows touched, 0 when the order is unknown or has moved on.
+     */
+    @Transactional
+    @Modifying
+    @Query("update Order o set o.status = :status, o.version = o.version + 1"
+            + " where o.id = :id and o.status in :expected")
+    int updateStatus(@Param("id") Long id, @Param("status") String status,
+                     @Param("expected") Collection<String> expected);
+
+    /** Set-based {@link #updateStatus}: one statement for many orders, those no longer {@code expected} are left as is. */
+    @Modifying
+    @Query("update Order o set o.status = :status, o.version = o.version + 1"
+            + " where o.id in :ids and o.status in :expected")
+    int updateStatusWhereIdIn(@Param("ids") Collection<Long> ids, @Param("status") String status,
+                              @Param("expected") Collection<String> expected);
+
+    /**
+     * Locks the orders, without their lines, ahead of a set-based status change that must know what it moves.
+     * In id order, so that concurrent batches lock alike and cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select o from Order o where o.id in :ids order by o.id")
+    List<Order> findAndLockByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Owners of the given orders, for cache invalidation after a status-only write. */
+    @Query("select distinct o.clientId from Order o where o.id in :ids")
+    List<String> findClientIdsByIdIn(@Param("ids") Collection<Long> ids);
+
+    /** Client and currency of the given orders, for the client rollups after a status-only write. */
+    @Query("select new fr.payetonkawa.orders.repository.OrderOwner(o.clientId, o.currency) from Order o where o.id in :ids")
+    List<OrderOwner> findOwnersByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("select o from Order o where o.clientId = :clientId order by o.createdAt desc, o.id desc")
+    List<Order> findFirstPageByClientId(@Param("clientId") String clientId, Limit limit);
+
+    // the redundant createdAt bound lets the planner skip the months after the cursor
+    @Query("select o from Order o where o.clientId = :clientId and o.createdAt <= :createdAt"
+            + " and (o.createdAt < :createdAt or (o.createdAt = :createdAt and o.id < :id))"
+            + " order by o.createdAt desc, o.id desc")
+    List<Order> findPageByClientIdAfter(@Param("clientId") String clientId,
+                                        @Param("createdAt") Timestamp createdAt,
+                                        @Param("id") Long id,
+                                        Limit limit);
+
+    /** Server-side cursor over the whole history; must be consumed inside a transaction. */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "256"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select o from Order o where o.clientId = :clientId order by o.createdAt desc, o.id desc")
+    Stream<Order> streamAllByClientId(@Param("clientId") String clientId);
+
+    /**
+     * Next chunk of the orders created before {@code before} in one of {@code statuses}, oldest first: closed ones to
+     * archive, or pending ones to fail. {@code before} restricts the scan to the old partitions.
+     */
+    @Query("select o.id from Order o where o.createdAt < :before and o.status in :statuses order by o.createdAt, o.id")
+    List<Long> findArchivableIds(@Param("before") Timestamp before, @Param("statuses") Collection<String> statuses,
+                                 Limit limit);
+
+    /**
+     * Moves the orders to {@code orders_archive} in one statement, their lines must have been moved first.
+     * Returns the number of orders moved.
+     */
+    @Modifying
+    @Query(value = "with moved as (delete from orders where created_at < :before and id in (:ids)"
+            + " returning id, client_id, created_at, status, currency, version)"
+            + " insert into orders_archive (id, client_id, created_at, status, currency, version)"
+            + " select id, client_id, created_at, status, currency, version from moved", nativeQuery = true)
+    int archiveByIdIn(@Param("ids") Collection<Long> ids, @Param("before") Timestamp before);
+
+    /** Creates the monthly partitions missing between the two months, see V9__partition_orders_by_month.sql. */
+    @Query(value = "select create_order_partitions(:fromMonth, :toMonth)", nativeQuery = true)
+    int createPartitions(@Param("fromMonth") LocalDate fromMonth, @Param("toMonth") LocalDate toMonth);
+
+    /** Drops the emptied monthly partitions ending before {@code beforeMonth}. */
+    @Query(value = "select drop_empty_order_partitions(:beforeMonth)", nativeQuery = true)
+    int dropEmptyPartitions(@Param("beforeMonth") LocalDate beforeMonth);
+
 }
@@ -0,0 +1,16 @@
+package fr.payetonkawa.orders.repository;
+
+import fr.payetonkawa.orders.entity.OrderStatus;
+
+import java.util.Map;
+
+public interface OrderStatusBatchRepository {
+
+    /**
+     * Applies many status changes in a single {@code UPDATE ... SET status = CASE id ... END WHERE ...}.
+     * Each row is only touched if its current status may precede the new one, see {@link OrderStatus#predecessors()}.
+     * Returns the number of rows touched.
+     */
+    int updateStatuses(Map<Long, OrderStatus> statusByOrderId);
+
+}
@@ -0,0 +1,65 @@
+package fr.payetonkawa.orders.repository;
+
+import fr.payetonkawa.orders.entity.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Query;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+@RequiredArgsConstructor
+public class OrderStatusBatchRepositoryImpl implements OrderStatusBatchRepository {
+
+    private final EntityManager entityManager;
+
+    @Override
+    @Transactional
+    public int updateStatuses(Map<Long, OrderStatus> statusByOrderId) {
+        if (statusByOrderId.isEmpty()) {
+            return 0;
+        }
+
+        List<Object> parameters = new ArrayList<>(statusByOrderId.size() * 3 + 8);
+        StringBuilder sql = new StringBuilder(96 + statusByOrderId.size() * 32)
+                .append("update orders set status = case id");
+        Map<OrderStatus, List<Long>> idsByTarget = new EnumMap<>(OrderStatus.class);
+        for (Map.Entry<Long, OrderStatus> change : statusByOrderId.entrySet()) {
+            sql.append(" when ").append(bind(parameters, change.getKey()))
+                    .append(" then ").append(bind(parameters, change.getValue().name()));
+            idsByTarget.computeIfAbsent(change.getValue(), status -> new ArrayList<>()).add(change.getKey());
+        }
+        sql.append(" end, version = version + 1 where");
+
+        // compare-and-set per target status: (id in (...) and status in (<its predecessors>)) or ...
+        String or = " ";
+        for (Map.Entry<OrderStatus, List<Long>> target : idsByTarget.entrySet()) {
+            sql.append(or).append("(id in (");
+            appendList(sql, parameters, target.getValue());
+            sql.append(") and status in (");
+            appendList(sql, parameters, target.getKey().predecessorNames());
+            sql.append("))");
+            or = " or ";
+        }
+
+        Query query = entityManager.createNativeQuery(sql.toString());
+        for (int i = 0; i < parameters.size(); i++) {
+            query.setParameter(i + 1, parameters.get(i));
+        }
+        return query.executeUpdate();
+    }
+
+    private static void appendList(StringBuilder sql, List<Object> parameters, List<?> values) {
+        for (int i = 0; i < values.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(bind(parameters, values.get(i)));
+        }
+    }
+
+    private static String bind(List<Object> parameters, Object value) {
+        parameters.add(value);
+        return "?" + parameters.size();
+    }
+}
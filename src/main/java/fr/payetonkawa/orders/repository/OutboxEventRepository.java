@@ -0,0 +1,32 @@
+package fr.payetonkawa.orders.repository;
+
+import fr.payetonkawa.orders.entity.OutboxEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /** Oldest pending events, rows already claimed by another relay instance are skipped. */
+    @Query(value = "select * from order_outbox where dispatched_at is null order by id limit :limit for update skip locked",
+            nativeQuery = true)
+    List<OutboxEvent> lockNextBatch(@Param("limit") int limit);
+
+    @Modifying
+    @Query("update OutboxEvent e set e.dispatchedAt = :dispatchedAt where e.id in :ids")
+    int markDispatched(@Param("ids") Collection<Long> ids, @Param("dispatchedAt") Timestamp dispatchedAt);
+
+    @Transactional
+    @Modifying
+    @Query("delete from OutboxEvent e where e.dispatchedAt < :before")
+    int deleteDispatchedBefore(@Param("before") Timestamp before);
+
+}
@@ -0,0 +1,26 @@
+package fr.payetonkawa.orders.repository;
+
+import fr.payetonkawa.orders.entity.ProcessedMessage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ProcessedMessageRepository extends JpaRepository<ProcessedMessage, String> {
+
+    @Query("select m.id from ProcessedMessage m where m.id in :ids")
+    List<String> findExistingIds(@Param("ids") Collection<String> ids);
+
+    @Transactional
+    @Modifying
+    @Query("delete from ProcessedMessage m where m.processedAt < :before")
+    int deleteProcessedBefore(@Param("before") Timestamp before);
+
+}
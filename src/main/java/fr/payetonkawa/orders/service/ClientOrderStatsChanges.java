@@ -0,0 +1,108 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.repository.ClientOrderStatsDelta;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * What a write does to the client rollups, summed per client and currency so it goes out as one row per
+ * client and currency, see {@link ClientOrderStatsService#apply}. An order counts in the row of its currency.
+ */
+public final class ClientOrderStatsChanges {
+
+    // sorted: rows are upserted, hence locked, in (client id, currency) order
+    private final Map<Key, Change> byClient = new TreeMap<>(
+            Comparator.comparing(Key::clientId).thenComparing(Key::currency));
+
+    /** A new order, or one moved to this client or currency. */
+    public ClientOrderStatsChanges added(Order order) {
+        Change change = change(order.getClientId(), order.getCurrency());
+        change.counts[OrderStatus.valueOf(order.getStatus()).ordinal()]++;
+        change.amount = Math.addExact(change.amount, amount(order.getItems()));
+        if (change.lastOrderAt == null || order.getCreatedAt().after(change.lastOrderAt)) {
+            change.lastOrderAt = order.getCreatedAt();
+        }
+        return this;
+    }
+
+    /** A deleted order, or one moved away from this client or currency, as it was before the write. */
+    public ClientOrderStatsChanges removed(String clientId, String currency, String status, long amount) {
+        Change change = change(clientId, currency);
+        change.counts[OrderStatus.valueOf(status).ordinal()]--;
+        change.amount = Math.subtractExact(change.amount, amount);
+        return this;
+    }
+
+    public ClientOrderStatsChanges moved(String clientId, String currency, String fromStatus, String toStatus) {
+        Change change = change(clientId, currency);
+        change.counts[OrderStatus.valueOf(fromStatus).ordinal()]--;
+        change.counts[OrderStatus.valueOf(toStatus).ordinal()]++;
+        return this;
+    }
+
+    public ClientOrderStatsChanges amountChanged(String clientId, String currency, long delta) {
+        Change change = change(clientId, currency);
+        change.amount = Math.addExact(change.amount, delta);
+        return this;
+    }
+
+    public boolean isEmpty() {
+        return byClient.isEmpty();
+    }
+
+    List<ClientOrderStatsDelta> deltas() {
+        List<ClientOrderStatsDelta> deltas = new ArrayList<>(byClient.size());
+        byClient.forEach((key, change) -> {
+            if (!change.isNeutral()) {
+                deltas.add(new ClientOrderStatsDelta(key.clientId(), key.currency(),
+                        change.counts[OrderStatus.PENDING.ordinal()],
+                        change.counts[OrderStatus.CONFIRMED.ordinal()],
+                        change.counts[OrderStatus.FAILED.ordinal()],
+                        change.counts[OrderStatus.CANCELLED.ordinal()],
+                        change.amount,
+                        change.lastOrderAt));
+            }
+        });
+        return deltas;
+    }
+
+    /** Spend of an order, in minor units. */
+    public static long amount(Collection<OrderItem> items) {
+        long amount = 0;
+        for (OrderItem item : items) {
+            amount = Math.addExact(amount, item.lineTotalMinor());
+        }
+        return amount;
+    }
+
+    private Change change(String clientId, String currency) {
+        return byClient.computeIfAbsent(new Key(clientId, currency), key -> new Change());
+    }
+
+    private record Key(String clientId, String currency) {
+    }
+
+    private static final class Change {
+        private final long[] counts = new long[OrderStatus.values().length];
+        private long amount;
+        private Timestamp lastOrderAt;
+
+        private boolean isNeutral() {
+            for (long count : counts) {
+                if (count != 0) {
+                    return false;
+                }
+            }
+            return amount == 0 && lastOrderAt == null;
+        }
+    }
+}
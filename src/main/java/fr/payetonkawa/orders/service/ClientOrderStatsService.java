@@ -0,0 +1,32 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.dto.ClientOrderStatsDto;
+import fr.payetonkawa.orders.repository.ClientOrderStatsRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Per-client rollup of the order history: counts per status, spend per currency and last order time, read off
+ * the primary key (one row per currency) however long the history. Maintained incrementally by every write to orders, in the write's own
+ * transaction so both commit or roll back together.
+ */
+@Service
+@RequiredArgsConstructor
+public class ClientOrderStatsService {
+
+    private final ClientOrderStatsRepository clientOrderStatsRepository;
+
+    public ClientOrderStatsDto get(String clientId) {
+        return ClientOrderStatsDto.fromEntities(clientId,
+                clientOrderStatsRepository.findAllByClientIdOrderByCurrency(clientId));
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void apply(ClientOrderStatsChanges changes) {
+        if (!changes.isEmpty()) {
+            clientOrderStatsRepository.applyDeltas(changes.deltas());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.CacheConfig;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * Invalidation side of the {@link CacheConfig#CLIENT_ORDERS} cache, filled by {@link OrderService#getByClientId}.
+ * Inside a transaction the eviction waits for the commit. A load that read the client's orders before the commit
+ * may still put its result after the eviction, that entry lives until {@code expire-after-write} at most.
+ */
+@Component
+@RequiredArgsConstructor
+public class ClientOrdersCache {
+
+    private final CacheManager cacheManager;
+
+    public void evict(String clientId) {
+        if (clientId != null) {
+            cache().evict(clientId);
+        }
+    }
+
+    public void evictAll(Collection<String> clientIds) {
+        clientIds.forEach(this::evict);
+    }
+
+    private Cache cache() {
+        return cacheManager.getCache(CacheConfig.CLIENT_ORDERS);
+    }
+}
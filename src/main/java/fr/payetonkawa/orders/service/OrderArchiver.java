@@ -0,0 +1,123 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderArchiveProperties;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.repository.OrderItemRepository;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Keeps the monthly partitions of orders and order_items in shape: creates the coming months, fails the orders
+ * still pending after {@code orders.archive.pending-timeout}, moves the closed orders older than
+ * {@code orders.archive.after} to the archive tables in chunks, then drops the old months left empty. As no order
+ * stays pending forever, every month empties once its orders are old enough: the hot partitions, and their
+ * indexes, only hold what the service still works on, and their number stays bounded. Archived orders no longer
+ * show in the client history. Postgres only, enabled with {@code orders.archive.enabled=true}.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "orders.archive.enabled", havingValue = "true")
+@RequiredArgsConstructor
+public class OrderArchiver {
+
+    /** Final statuses, or close to it: a confirmed order past the archival age is no longer cancelled. */
+    static final List<String> CLOSED = List.of(
+            OrderStatus.CONFIRMED.name(), OrderStatus.CANCELLED.name(), OrderStatus.FAILED.name());
+
+    static final List<String> PENDING = List.of(OrderStatus.PENDING.name());
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ClientOrdersCache clientOrdersCache;
+    private final StockDepletionService stockDepletionService;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderArchiveProperties properties;
+
+    @Scheduled(fixedDelayString = "${orders.archive.interval-ms:3600000}")
+    public void run() {
+        try {
+            LocalDate today = LocalDate.now();
+            Integer created = transactionTemplate.execute(status -> orderRepository.createPartitions(
+                    today.withDayOfMonth(1), today.plusMonths(properties.monthsAhead())));
+            if (created != null && created > 0) {
+                log.info("📦 Created {} monthly order partitions", created);
+            }
+
+            long now = System.currentTimeMillis();
+            failStalePending(new Timestamp(now - properties.pendingTimeout().toMillis()));
+
+            Timestamp before = new Timestamp(now - properties.after().toMillis());
+            archive(before);
+
+            LocalDate beforeMonth = before.toLocalDateTime().toLocalDate().withDayOfMonth(1);
+            Integer dropped = transactionTemplate.execute(status -> orderRepository.dropEmptyPartitions(beforeMonth));
+            if (dropped != null && dropped > 0) {
+                log.info("🧹 Dropped {} emptied monthly order partitions before {}", dropped, beforeMonth);
+            }
+        } catch (RuntimeException e) {
+            log.warn("⚠️ Order archival interrupted, it resumes on the next run: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Fails the orders created before {@code before} and still pending, as a missing stock reply: left alone they
+     * would keep their month from ever being dropped. Returns the number of orders failed.
+     */
+    int failStalePending(Timestamp before) {
+        int failed = 0;
+        List<Long> chunk;
+        do {
+            // failed orders leave the selection, the next chunk starts over from the oldest pending
+            chunk = orderRepository.findArchivableIds(before, PENDING, Limit.of(properties.chunkSize()));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            failed += stockDepletionService.failPending(chunk);
+        } while (chunk.size() == properties.chunkSize());
+
+        if (failed > 0) {
+            log.info("⏱️ Failed {} orders still pending since before {}", failed, before);
+        }
+        return failed;
+    }
+
+    /** Returns the number of orders archived. */
+    int archive(Timestamp before) {
+        int archived = 0;
+        List<Long> chunk;
+        do {
+            chunk = orderRepository.findArchivableIds(before, CLOSED, Limit.of(properties.chunkSize()));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            archived += archiveChunk(chunk, before);
+        } while (chunk.size() == properties.chunkSize());
+
+        if (archived > 0) {
+            log.info("🧹 Archived {} closed orders created before {}", archived, before);
+        }
+        return archived;
+    }
+
+    private int archiveChunk(List<Long> orderIds, Timestamp before) {
+        Integer moved = transactionTemplate.execute(status -> {
+            List<String> clientIds = orderRepository.findClientIdsByIdIn(orderIds);
+            // a closed order only moves to another closed status, the chunk can be moved as selected
+            orderItemRepository.archiveByOrderIdIn(orderIds, before);
+            int count = orderRepository.archiveByIdIn(orderIds, before);
+            clientOrdersCache.evictAll(clientIds);
+            return count;
+        });
+        return moved == null ? 0 : moved;
+    }
+}
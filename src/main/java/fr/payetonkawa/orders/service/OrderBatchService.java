@@ -0,0 +1,121 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderBatchProperties;
+import fr.payetonkawa.orders.dto.OrderBatchResultDto;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.OrderCreated;
+import fr.payetonkawa.orders.messaging.OrderCreatedBatch;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+
+/**
+ * Bulk import behind {@code POST /v1/batch}. Every order is validated before anything is written, valid ones
+ * are then saved in chunks, one transaction and a few JDBC batches per chunk, so a failure only loses
+ * its own chunk. Events go through the outbox like single creations.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderBatchService {
+
+    static final String BATCH_ROUTING_KEY = "order.created.batch";
+
+    private final OrderRepository orderRepository;
+    private final OrderEventOutbox orderEventOutbox;
+    private final ClientOrdersCache clientOrdersCache;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderBatchProperties properties;
+    private final OrderMetrics orderMetrics;
+
+    public List<OrderBatchResultDto> create(List<OrderDto> orderDtos) {
+        if (orderDtos == null || orderDtos.isEmpty()) {
+            throw new MissingDataException("At least one order must be provided");
+        }
+        if (orderDtos.size() > properties.maxSize()) {
+            throw new IllegalArgumentException("A batch cannot hold more than " + properties.maxSize() + " orders");
+        }
+
+        OrderBatchResultDto[] results = new OrderBatchResultDto[orderDtos.size()];
+        List<PendingOrder> valid = new ArrayList<>(orderDtos.size());
+        for (int index = 0; index < orderDtos.size(); index++) {
+            try {
+                valid.add(new PendingOrder(index, toOrder(orderDtos.get(index))));
+            } catch (MissingDataException | IllegalArgumentException e) {
+                results[index] = OrderBatchResultDto.rejected(index, e.getMessage());
+            }
+        }
+
+        int saved = 0;
+        for (int from = 0; from < valid.size(); from += properties.chunkSize()) {
+            List<PendingOrder> chunk = valid.subList(from, Math.min(from + properties.chunkSize(), valid.size()));
+            try {
+                transactionTemplate.executeWithoutResult(status -> saveChunk(chunk));
+                chunk.forEach(pending -> {
+                    results[pending.index()] =
+                            OrderBatchResultDto.created(pending.index(), OrderDto.fromEntity(pending.order()));
+                    orderMetrics.recordItems(pending.order().getItems().size());
+                });
+                saved += chunk.size();
+            } catch (RuntimeException e) {
+                // whatever broke the chunk (database, amount overflow, event encoding), it rolled back alone and
+                // the caller still learns what the earlier chunks saved
+                log.warn("⚠️ Batch chunk of {} orders rolled back: {}", chunk.size(), e.getMessage());
+                chunk.forEach(pending -> results[pending.index()] =
+                        OrderBatchResultDto.failed(pending.index(), "Could not be saved, retry this order"));
+            }
+        }
+
+        log.info("📦 Imported {} of {} orders", saved, orderDtos.size());
+        return Arrays.asList(results);
+    }
+
+    private void saveChunk(List<PendingOrder> chunk) {
+        List<Order> orders = orderRepository.saveAll(chunk.stream().map(PendingOrder::order).toList());
+
+        List<OrderCreated> payloads = new ArrayList<>(orders.size());
+        Set<String> clientIds = new HashSet<>();
+        ClientOrderStatsChanges stats = new ClientOrderStatsChanges();
+        for (Order order : orders) {
+            payloads.add(new OrderCreated(order.getId(), order.getClientId(), OrderLine.of(order.getItems())));
+            clientIds.add(order.getClientId());
+            stats.added(order);
+        }
+        // one rollup row per client of the chunk, however many orders it holds
+        clientOrderStatsService.apply(stats);
+
+        if (properties.groupedEvent()) {
+            orderEventOutbox.enqueue(BATCH_ROUTING_KEY, ExchangeMessage.builder()
+                    .payload(new OrderCreatedBatch(payloads))
+                    .build());
+        } else {
+            payloads.forEach(payload -> orderEventOutbox.enqueue("order.created", ExchangeMessage.builder()
+                    .payload(payload)
+                    .build()));
+        }
+        clientOrdersCache.evictAll(clientIds);
+    }
+
+    private static Order toOrder(OrderDto orderDto) {
+        OrderService.validateOrderInputForCreate(orderDto);
+        Order order = new Order();
+        order.setClientId(orderDto.getClientId());
+        order.setCurrency(orderDto.currencyOrDefault());
+        order.setItems(orderDto.getItems().stream().map(OrderItemDto::toEntity).toList());
+        return order;
+    }
+
+    private record PendingOrder(int index, Order order) {
+    }
+}
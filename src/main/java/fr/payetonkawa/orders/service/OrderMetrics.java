@@ -0,0 +1,70 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.exception.StatusTransitionException;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Meters of the order lifecycle: {@code orders.service} times every operation tagged by its outcome,
+ * {@code orders.items} is the distribution of lines per written order. Percentile histograms of both are
+ * published (see {@code management.metrics.distribution} in application.properties) so p99 can be alerted on.
+ */
+@Component
+public class OrderMetrics {
+
+    public static final String SUCCESS = "success";
+    /** Bad input or unknown order, reported to the caller. */
+    public static final String REJECTED = "rejected";
+    /** Lost to a concurrent change, or a status change the order's current state forbids. */
+    public static final String CONFLICT = "conflict";
+    public static final String ERROR = "error";
+
+    private final Meter.MeterProvider<Timer> operations;
+    private final DistributionSummary itemsPerOrder;
+
+    public OrderMetrics(MeterRegistry meterRegistry) {
+        this.operations = Timer.builder("orders.service")
+                .description("Order operations, by outcome")
+                .withRegistry(meterRegistry);
+        this.itemsPerOrder = DistributionSummary.builder("orders.items")
+                .description("Lines per created or updated order")
+                .baseUnit("items")
+                .register(meterRegistry);
+    }
+
+    public <T> T time(String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        String outcome = SUCCESS;
+        try {
+            return call.get();
+        } catch (RuntimeException e) {
+            outcome = outcome(e);
+            throw e;
+        } finally {
+            operations.withTags("operation", operation, "outcome", outcome)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public void recordItems(int items) {
+        itemsPerOrder.record(items);
+    }
+
+    static String outcome(RuntimeException e) {
+        if (e instanceof MissingDataException || e instanceof IllegalArgumentException) {
+            return REJECTED;
+        }
+        if (e instanceof StatusTransitionException || e instanceof OptimisticLockingFailureException) {
+            return CONFLICT;
+        }
+        return ERROR;
+    }
+}
@@ -1,38 +1,135 @@
 package fr.payetonkawa.orders.service;
 
+import fr.payetonkawa.orders.config.CacheConfig;
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.dto.OrderCursor;
 import fr.payetonkawa.orders.dto.OrderDto;
 import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.dto.OrderPageDto;
 import fr.payetonkawa.orders.entity.Order;
 import fr.payetonkawa.orders.entity.OrderItem;
-import fr.payetonkawa.orders.event.EventPublisher;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
 import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.exception.StatusTransitionException;
 import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.OrderCancelled;
+import fr.payetonkawa.orders.messaging.OrderCreated;
+import fr.payetonkawa.orders.messaging.OrderDeleted;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import fr.payetonkawa.orders.messaging.OrderUpdated;
 import fr.payetonkawa.orders.repository.OrderItemRepository;
 import fr.payetonkawa.orders.repository.OrderRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import lombok.AllArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @AllArgsConstructor
 public class OrderService {
 
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int MAX_PAGE_SIZE = 200;
+    /** Attempts of a versioned write that keeps losing to concurrent changes before the conflict is reported. */
+    static final int MAX_WRITE_ATTEMPTS = 3;
+
     private final OrderRepository orderRepository;
     private final OrderItemRepository orderItemRepository;
-    private final EventPublisher eventPublisher;
-
+    private final OrderEventOutbox orderEventOutbox;
+    private final EntityManager entityManager;
+    private final ClientOrdersCache clientOrdersCache;
+    private final TransactionTemplate transactionTemplate;
+    private final OrderEventProperties orderEventProperties;
+    private final OrderMetrics orderMetrics;
+    private final ClientOrderStatsService clientOrderStatsService;
+
+    /**
+     * Served from {@link CacheConfig#CLIENT_ORDERS}, every write below evicts the clients it touches.
+     * Only cache misses reach the timer, hits show in the cache metrics. Misses are not synchronized per client:
+     * Caffeine would run the load inside a map compute, pinning the carrier of a virtual thread for the whole query.
+     */
+    @Cacheable(cacheNames = CacheConfig.CLIENT_ORDERS)
+    @Transactional(readOnly = true)
     public List<OrderDto> getByClientId(String clientId) {
-        return OrderDto.fromEntities(orderRepository.findAllByClientId(clientId));
+        return orderMetrics.time("getByClientId", () -> OrderDto.fromEntities(orderRepository.findAllByClientId(clientId)));
+    }
+
+    /** Keyset page of a client's history, newest first. A null cursor starts from the most recent order. */
+    @Transactional(readOnly = true)
+    public OrderPageDto getPageByClientId(String clientId, String cursor, int limit) {
+        int pageSize = Math.clamp(limit, 1, MAX_PAGE_SIZE);
+        // one extra row tells us whether another page exists without a count query
+        Limit fetchLimit = Limit.of(pageSize + 1);
+
+        List<Order> orders;
+        if (cursor == null || cursor.isBlank()) {
+            orders = orderRepository.findFirstPageByClientId(clientId, fetchLimit);
+        } else {
+            OrderCursor after = OrderCursor.decode(cursor);
+            orders = orderRepository.findPageByClientIdAfter(
+                    clientId, after.createdAtTimestamp(), after.id(), fetchLimit);
+        }
+
+        if (orders.size() <= pageSize) {
+            return new OrderPageDto(OrderDto.fromEntities(orders), null);
+        }
+        List<Order> page = orders.subList(0, pageSize);
+        return new OrderPageDto(OrderDto.fromEntities(page), OrderCursor.of(page.get(pageSize - 1)).encode());
+    }
+
+    /**
+     * Pushes every order of a client to the sink as it comes off the JDBC cursor.
+     * Orders are mapped in chunks of {@link Order#ITEMS_BATCH_SIZE} so their items come in one batch fetch,
+     * then the persistence context is cleared so it does not grow with the history.
+     */
+    @Transactional(readOnly = true)
+    public void streamByClientId(String clientId, Consumer<OrderDto> sink) {
+        List<Order> chunk = new ArrayList<>(Order.ITEMS_BATCH_SIZE);
+        try (Stream<Order> orders = orderRepository.streamAllByClientId(clientId)) {
+            orders.forEach(order -> {
+                chunk.add(order);
+                if (chunk.size() == Order.ITEMS_BATCH_SIZE) {
+                    flushChunk(chunk, sink);
+                }
+            });
+        }
+        flushChunk(chunk, sink);
     }
 
+    private void flushChunk(List<Order> chunk, Consumer<OrderDto> sink) {
+        chunk.forEach(order -> sink.accept(OrderDto.fromEntity(order)));
+        chunk.clear();
+        entityManager.clear();
+    }
+
+    /** Timed around its transaction like update and delete: a failed commit is not a successful create. */
     public OrderDto create(OrderDto orderDto) {
+        return orderMetrics.time("create", () -> {
+            OrderDto created = transactionTemplate.execute(status -> applyCreate(orderDto));
+            orderMetrics.recordItems(created.getItems().size());
+            return created;
+        });
+    }
+
+    private OrderDto applyCreate(OrderDto orderDto) {
         validateOrderInputForCreate(orderDto);
 
         Order order = new Order();
         order.setClientId(orderDto.getClientId());
+        order.setCurrency(orderDto.currencyOrDefault());
         order.setCreatedAt(new Timestamp(System.currentTimeMillis()));
 
         List<OrderItem> items = orderDto.getItems().stream()
@@ -41,41 +138,51 @@ public class OrderService {
         order.setItems(items);
 
         Order savedOrder = orderRepository.save(order);
+        clientOrderStatsService.apply(new ClientOrderStatsChanges().added(savedOrder));
 
-        List<Map<String, Object>> itemPayload = mapItemsToPayload(savedOrder.getItems());
-        Map<String, Object> payload = Map.of(
-                "orderId", savedOrder.getId(),
-                "clientId", savedOrder.getClientId(),
-                "items", itemPayload
-        );
-
-        eventPublisher.sendEvent("order.created", ExchangeMessage.builder()
-                .payload(payload)
+        orderEventOutbox.enqueue("order.created", ExchangeMessage.builder()
+                .payload(new OrderCreated(savedOrder.getId(), savedOrder.getClientId(), OrderLine.of(savedOrder.getItems())))
                 .build());
+        clientOrdersCache.evict(savedOrder.getClientId());
 
         return OrderDto.fromEntity(savedOrder);
     }
 
 
+    /**
+     * Read-modify-write guarded by the order version: if a stock event or another request changed the order
+     * in between, the commit fails and the update is replayed on fresh state.
+     */
     public OrderDto update(Long orderId, OrderDto orderDto) {
-        Order existingOrder = orderRepository.findById(orderId)
+        return orderMetrics.time("update", () -> {
+            OrderDto updated = withOptimisticRetry(() -> applyUpdate(orderId, orderDto));
+            // recorded once committed, a replayed attempt counts once; a cancellation leaves the lines as they are
+            if (!isCancellationRequest(orderDto)) {
+                orderMetrics.recordItems(updated.getItems().size());
+            }
+            return updated;
+        });
+    }
+
+    private OrderDto applyUpdate(Long orderId, OrderDto orderDto) {
+        Order existingOrder = orderRepository.findWithItemsById(orderId)
                 .orElseThrow(() -> new MissingDataException("Order not found"));
 
         String previousStatus = existingOrder.getStatus();
 
-        if (isCancellationRequest(orderDto) && !"CANCELLED".equalsIgnoreCase(previousStatus)) {
-            existingOrder.setStatus("CANCELLED");
+        if (isCancellationRequest(orderDto) && !OrderStatus.CANCELLED.name().equalsIgnoreCase(previousStatus)) {
+            if (!OrderStatus.CANCELLED.canFollow(previousStatus)) {
+                throw new StatusTransitionException(previousStatus, OrderStatus.CANCELLED.name());
+            }
+            existingOrder.setStatus(OrderStatus.CANCELLED.name());
             Order saved = orderRepository.save(existingOrder);
+            clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                    .moved(saved.getClientId(), saved.getCurrency(), previousStatus, OrderStatus.CANCELLED.name()));
 
-            List<Map<String, Object>> itemPayload = mapItemsToPayload(saved.getItems());
-
-            eventPublisher.sendEvent("order.cancelled", ExchangeMessage.builder()
-                    .payload(Map.of(
-                            "orderId", saved.getId(),
-                            "clientId", saved.getClientId(),
-                            "items", itemPayload
-                    ))
+            orderEventOutbox.enqueue("order.cancelled", ExchangeMessage.builder()
+                    .payload(new OrderCancelled(saved.getId(), saved.getClientId(), OrderLine.of(saved.getItems())))
                     .build());
+            clientOrdersCache.evict(saved.getClientId());
 
             return OrderDto.fromEntity(saved);
         }
@@ -83,56 +190,104 @@ public class OrderService {
 
         validateOrderInputForUpdate(orderDto);
 
-        List<Map<String, Object>> previousItems = mapItemsToPayload(existingOrder.getItems());
+        String previousClientId = existingOrder.getClientId();
+        String previousCurrency = existingOrder.getCurrency();
+        long previousAmount = ClientOrderStatsChanges.amount(existingOrder.getItems());
+        // line edits alone leave the order row clean: bump its version anyway, so of two concurrent updates the
+        // later commit fails and is retried on fresh lines instead of overwriting them from a stale read
+        entityManager.lock(existingOrder, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
 
         existingOrder.setClientId(orderDto.getClientId()); // clientId is required
-        List<OrderItem> newItems = orderDto.getItems().stream()
+        if (orderDto.getCurrency() != null) { // kept when left out
+            existingOrder.setCurrency(orderDto.currencyOrDefault());
+        }
+        List<OrderItem> requestedItems = orderDto.getItems().stream()
                 .map(OrderItemDto::toEntity)
                 .collect(Collectors.toList());
-        existingOrder.setItems(newItems);
+        ItemChanges changes = mergeItems(existingOrder, requestedItems);
 
         Order updatedOrder = orderRepository.save(existingOrder);
+        clientOrderStatsService.apply(statsChanges(updatedOrder, previousClientId, previousCurrency, previousStatus,
+                previousAmount));
 
-        List<Map<String, Object>> newItemPayload = mapItemsToPayload(updatedOrder.getItems());
-
-        eventPublisher.sendEvent("order.updated", ExchangeMessage.builder()
-                .payload(Map.of(
-                        "orderId", updatedOrder.getId(),
-                        "clientId", updatedOrder.getClientId(),
-                        "previousItems", previousItems,
-                        "items", newItemPayload
-                ))
+        orderEventOutbox.enqueue("order.updated", ExchangeMessage.builder()
+                .payload(updatedPayload(updatedOrder, changes))
                 .build());
+        // the order may have moved to another client, both lists change
+        clientOrdersCache.evict(previousClientId);
+        clientOrdersCache.evict(updatedOrder.getClientId());
 
         return OrderDto.fromEntity(updatedOrder);
     }
 
+    private static ClientOrderStatsChanges statsChanges(Order order, String previousClientId, String previousCurrency,
+                                                        String previousStatus, long previousAmount) {
+        ClientOrderStatsChanges changes = new ClientOrderStatsChanges();
+        if (previousClientId.equals(order.getClientId()) && previousCurrency.equals(order.getCurrency())) {
+            return changes.amountChanged(previousClientId, previousCurrency,
+                    ClientOrderStatsChanges.amount(order.getItems()) - previousAmount);
+        }
+        // moved to another client or repriced in another currency: it leaves one row for another
+        return changes.removed(previousClientId, previousCurrency, previousStatus, previousAmount).added(order);
+    }
+
+    private OrderUpdated updatedPayload(Order order, ItemChanges changes) {
+        if (orderEventProperties.updatedFormat() == OrderEventProperties.UpdatedFormat.DELTA) {
+            List<OrderUpdated.ItemDelta> deltas = new ArrayList<>(changes.quantityDeltas().size());
+            changes.quantityDeltas().forEach((itemId, delta) -> deltas.add(new OrderUpdated.ItemDelta(itemId, delta)));
+            return OrderUpdated.delta(order.getId(), order.getClientId(), deltas);
+        }
+        return OrderUpdated.full(order.getId(), order.getClientId(), changes.previousItems(), OrderLine.of(order.getItems()));
+    }
+
     /** Delete order (idempotent) + publish order.deleted only if it existed */
     public void delete(Long id) {
-        Optional<Order> opt = orderRepository.findById(id);
+        orderMetrics.time("delete", () -> withOptimisticRetry(() -> {
+            applyDelete(id);
+            return null;
+        }));
+    }
+
+    private void applyDelete(Long id) {
+        Optional<Order> opt = orderRepository.findWithItemsById(id);
 
         boolean existed = opt.isPresent();
-        boolean wasCancelled = existed && "CANCELLED".equalsIgnoreCase(opt.get().getStatus());
+        boolean wasCancelled = existed && OrderStatus.CANCELLED.name().equalsIgnoreCase(opt.get().getStatus());
 
         // on capture le payload uniquement si on DOIT publier
-        List<Map<String, Object>> itemPayload = (!wasCancelled && existed)
-                ? mapItemsToPayload(opt.get().getItems())
+        List<OrderLine> itemPayload = (!wasCancelled && existed)
+                ? OrderLine.of(opt.get().getItems())
                 : null;
 
         orderRepository.deleteById(id);
+        opt.ifPresent(order -> {
+            clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                    .removed(order.getClientId(), order.getCurrency(), order.getStatus(),
+                            ClientOrderStatsChanges.amount(order.getItems())));
+            clientOrdersCache.evict(order.getClientId());
+        });
 
         if (itemPayload != null) {
-            eventPublisher.sendEvent("order.deleted", ExchangeMessage.builder()
-                    .payload(Map.of(
-                            "orderId", id,
-                            "items", itemPayload
-                    ))
+            orderEventOutbox.enqueue("order.deleted", ExchangeMessage.builder()
+                    .payload(new OrderDeleted(id, itemPayload))
                     .build());
         }
     }
 
 
-    private void validateOrderInputForCreate(OrderDto orderDto) {
+    private <T> T withOptimisticRetry(Supplier<T> work) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> work.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt == MAX_WRITE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    static void validateOrderInputForCreate(OrderDto orderDto) {
         if (orderDto.getClientId() == null || orderDto.getItems() == null || orderDto.getItems().isEmpty()) {
             throw new MissingDataException("Client ID and items must be provided");
         }
@@ -148,17 +303,53 @@ public class OrderService {
     }
 
     private boolean isCancellationRequest(OrderDto orderDto) {
-        return orderDto.getStatus() != null && "CANCELLED".equalsIgnoreCase(orderDto.getStatus());
+        return orderDto.getStatus() != null && OrderStatus.CANCELLED.name().equalsIgnoreCase(orderDto.getStatus());
     }
 
 
-    private List<Map<String, Object>> mapItemsToPayload(List<OrderItem> items) {
-        if (items == null) return List.of();
-        return items.stream().map(item -> {
-            Map<String, Object> map = new HashMap<>();
-            map.put("itemId", item.getItemId());
-            map.put("quantity", item.getQuantity());
-            return map;
-        }).collect(Collectors.toList());
+    /**
+     * Brings the order lines in line with the request, keyed by itemId: kept lines are updated in place
+     * (Hibernate only writes the ones that actually changed), missing ones are removed and new ones inserted.
+     * Repeated itemIds in the request are summed into one line. Returns the lines as they were before
+     * and the resulting quantity change per itemId.
+     */
+    static ItemChanges mergeItems(Order order, List<OrderItem> requestedItems) {
+        Map<String, OrderItem> requested = new LinkedHashMap<>();
+        for (OrderItem item : requestedItems) {
+            requested.merge(item.getItemId(), item, (line, duplicate) -> {
+                line.setQuantity(line.getQuantity() + duplicate.getQuantity());
+                line.setUnitPriceMinor(duplicate.getUnitPriceMinor());
+                return line;
+            });
+        }
+
+        List<OrderLine> previousItems = new ArrayList<>(order.getItems().size());
+        Map<String, Integer> quantityDeltas = new LinkedHashMap<>();
+        Iterator<OrderItem> lines = order.getItems().iterator();
+        while (lines.hasNext()) {
+            OrderItem line = lines.next();
+            previousItems.add(OrderLine.of(line));
+            OrderItem wanted = requested.remove(line.getItemId());
+            if (wanted == null) {
+                lines.remove(); // orphanRemoval deletes the row
+                quantityDeltas.merge(line.getItemId(), -line.getQuantity(), Integer::sum);
+            } else {
+                quantityDeltas.merge(line.getItemId(), wanted.getQuantity() - line.getQuantity(), Integer::sum);
+                line.setQuantity(wanted.getQuantity());
+                line.setUnitPriceMinor(wanted.getUnitPriceMinor());
+            }
+        }
+
+        for (OrderItem added : requested.values()) {
+            added.setId(null); // always a new row, whatever id the client sent
+            order.addItem(added);
+            quantityDeltas.put(added.getItemId(), added.getQuantity());
+        }
+        quantityDeltas.values().removeIf(delta -> delta == 0);
+        return new ItemChanges(previousItems, quantityDeltas);
+    }
+
+    /** Outcome of {@link #mergeItems}: lines before the merge, and non-zero quantity changes by itemId. */
+    record ItemChanges(List<OrderLine> previousItems, Map<String, Integer> quantityDeltas) {
     }
 }
@@ -0,0 +1,84 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.StockDepletionProperties;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.repository.OrderItemRepository;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Fails every PENDING order holding a product that ran out. Orders are resolved through the
+ * (item_id, order_id) index in chunks of ascending ids, each chunk locked then failed by one compare-and-set update
+ * in its own transaction: no line is loaded, and row locks are held for one chunk at a time. Idempotent, a second run
+ * finds no PENDING order left.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockDepletionService {
+
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final ClientOrdersCache clientOrdersCache;
+    private final ClientOrderStatsService clientOrderStatsService;
+    private final TransactionTemplate transactionTemplate;
+    private final StockDepletionProperties properties;
+
+    /** Returns the number of orders moved to FAILED. */
+    public int failPendingOrders(String itemId) {
+        int failed = 0;
+        long afterId = 0;
+        List<Long> chunk;
+        do {
+            chunk = orderItemRepository.findOrderIdsByItemIdAfter(
+                    itemId, OrderStatus.PENDING.name(), afterId, Limit.of(properties.chunkSize()));
+            if (chunk.isEmpty()) {
+                break;
+            }
+            failed += failPending(chunk);
+            afterId = chunk.get(chunk.size() - 1);
+        } while (chunk.size() == properties.chunkSize());
+
+        log.info("📦 Item '{}' depleted, {} pending orders moved to FAILED", itemId, failed);
+        return failed;
+    }
+
+    /**
+     * Fails those of the orders still PENDING in one transaction, with their client rollups and cached lists.
+     * Also used by {@link OrderArchiver} for the orders whose stock reply never came.
+     */
+    int failPending(List<Long> orderIds) {
+        Integer updated = transactionTemplate.execute(status -> {
+            // an order confirmed or cancelled since it was read is left alone; locked rows cannot move any more
+            List<Long> pending = new ArrayList<>(orderIds.size());
+            ClientOrderStatsChanges stats = new ClientOrderStatsChanges();
+            Set<String> clientIds = new LinkedHashSet<>();
+            for (Order order : orderRepository.findAndLockByIdIn(orderIds)) {
+                if (OrderStatus.FAILED.canFollow(order.getStatus())) {
+                    pending.add(order.getId());
+                    stats.moved(order.getClientId(), order.getCurrency(), order.getStatus(), OrderStatus.FAILED.name());
+                    clientIds.add(order.getClientId());
+                }
+            }
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            int count = orderRepository.updateStatusWhereIdIn(
+                    pending, OrderStatus.FAILED.name(), OrderStatus.FAILED.predecessorNames());
+            clientOrderStatsService.apply(stats);
+            clientOrdersCache.evictAll(clientIds);
+            return count;
+        });
+        return updated == null ? 0 : updated;
+    }
+}
@@ -0,0 +1,30 @@
+-- Per-client rollup behind GET /v1/{clientId}/stats, kept up to date by the writes themselves
+-- (see ClientOrderStatsService). Archived orders still count: archival moves orders, it does not undo them.
+CREATE TABLE client_order_stats (
+    client_id       VARCHAR(255)     NOT NULL PRIMARY KEY,
+    pending_count   BIGINT           NOT NULL DEFAULT 0,
+    confirmed_count BIGINT           NOT NULL DEFAULT 0,
+    failed_count    BIGINT           NOT NULL DEFAULT 0,
+    cancelled_count BIGINT           NOT NULL DEFAULT 0,
+    total_amount    DOUBLE PRECISION NOT NULL DEFAULT 0,
+    last_order_at   TIMESTAMP(6)
+);
+
+-- Backfilled from the orders written so far, live and archived
+INSERT INTO client_order_stats (client_id, pending_count, confirmed_count, failed_count, cancelled_count,
+                                total_amount, last_order_at)
+SELECT o.client_id,
+       COUNT(*) FILTER (WHERE o.status = 'PENDING'),
+       COUNT(*) FILTER (WHERE o.status = 'CONFIRMED'),
+       COUNT(*) FILTER (WHERE o.status = 'FAILED'),
+       COUNT(*) FILTER (WHERE o.status = 'CANCELLED'),
+       COALESCE(SUM(lines.amount), 0),
+       MAX(o.created_at)
+FROM (SELECT id, client_id, created_at, status FROM orders
+      UNION ALL
+      SELECT id, client_id, created_at, status FROM orders_archive) o
+         LEFT JOIN (SELECT order_id, SUM(quantity * COALESCE(unit_price, 0)) AS amount FROM order_items GROUP BY order_id
+                    UNION ALL
+                    SELECT order_id, SUM(quantity * COALESCE(unit_price, 0)) FROM order_items_archive GROUP BY order_id) lines
+                   ON lines.order_id = o.id
+GROUP BY o.client_id;
@@ -0,0 +1,27 @@
+-- Prices as integer minor units of the order's currency (cents for EUR) instead of floating point euros:
+-- line totals and the client_order_stats sums are exact. Existing prices were euros, rounded to the cent.
+-- Every line is rewritten: run it in a maintenance window.
+
+-- A constant default is only recorded in the catalog, existing orders take it without a rewrite
+ALTER TABLE orders ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'EUR';
+ALTER TABLE orders_archive ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'EUR';
+
+ALTER TABLE order_items ADD COLUMN unit_price_minor BIGINT NOT NULL DEFAULT 0;
+UPDATE order_items SET unit_price_minor = ROUND(unit_price * 100) WHERE unit_price IS NOT NULL;
+ALTER TABLE order_items DROP COLUMN unit_price;
+
+ALTER TABLE order_items_archive ADD COLUMN unit_price_minor BIGINT NOT NULL DEFAULT 0;
+UPDATE order_items_archive SET unit_price_minor = ROUND(unit_price * 100) WHERE unit_price IS NOT NULL;
+ALTER TABLE order_items_archive DROP COLUMN unit_price;
+
+-- Recomputed from the converted lines rather than converted: the stored sums carry the floating point drift
+ALTER TABLE client_order_stats ALTER COLUMN total_amount TYPE BIGINT USING 0;
+UPDATE client_order_stats s
+SET total_amount = lines.amount
+FROM (SELECT o.client_id, SUM(i.quantity * i.unit_price_minor) AS amount
+      FROM (SELECT id, client_id FROM orders UNION ALL SELECT id, client_id FROM orders_archive) o
+               JOIN (SELECT order_id, quantity, unit_price_minor FROM order_items
+                     UNION ALL
+                     SELECT order_id, quantity, unit_price_minor FROM order_items_archive) i ON i.order_id = o.id
+      GROUP BY o.client_id) lines
+WHERE lines.client_id = s.client_id;
@@ -0,0 +1,28 @@
+-- client_order_stats keeps one row per client and currency: minor units of different currencies are never
+-- added up. Rebuilt from the orders, live and archived, like the V10 backfill; writes blocked meanwhile.
+LOCK TABLE orders, order_items, orders_archive, order_items_archive, client_order_stats IN SHARE MODE;
+
+ALTER TABLE client_order_stats DROP CONSTRAINT client_order_stats_pkey;
+ALTER TABLE client_order_stats ADD COLUMN currency CHAR(3) NOT NULL DEFAULT 'EUR';
+ALTER TABLE client_order_stats ALTER COLUMN currency DROP DEFAULT;
+ALTER TABLE client_order_stats ADD CONSTRAINT pk_client_order_stats PRIMARY KEY (client_id, currency);
+
+DELETE FROM client_order_stats;
+INSERT INTO client_order_stats (client_id, currency, pending_count, confirmed_count, failed_count, cancelled_count,
+                                total_amount, last_order_at)
+SELECT o.client_id,
+       o.currency,
+       COUNT(*) FILTER (WHERE o.status = 'PENDING'),
+       COUNT(*) FILTER (WHERE o.status = 'CONFIRMED'),
+       COUNT(*) FILTER (WHERE o.status = 'FAILED'),
+       COUNT(*) FILTER (WHERE o.status = 'CANCELLED'),
+       COALESCE(SUM(lines.amount), 0),
+       MAX(o.created_at)
+FROM (SELECT id, client_id, currency, created_at, status FROM orders
+      UNION ALL
+      SELECT id, client_id, currency, created_at, status FROM orders_archive) o
+         LEFT JOIN (SELECT order_id, SUM(quantity * unit_price_minor) AS amount FROM order_items GROUP BY order_id
+                    UNION ALL
+                    SELECT order_id, SUM(quantity * unit_price_minor) FROM order_items_archive GROUP BY order_id) lines
+                   ON lines.order_id = o.id
+GROUP BY o.client_id, o.currency;
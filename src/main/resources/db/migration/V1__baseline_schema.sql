@@ -0,0 +1,15 @@
+-- Schema as previously generated by Hibernate auto-DDL, kept idempotent for existing databases
+CREATE TABLE IF NOT EXISTS orders (
+    id         BIGINT       NOT NULL PRIMARY KEY,
+    client_id  VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    status     VARCHAR(255) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS order_items (
+    id         BIGINT       NOT NULL PRIMARY KEY,
+    item_id    VARCHAR(255) NOT NULL,
+    quantity   INTEGER      NOT NULL,
+    unit_price DOUBLE PRECISION,
+    order_id   BIGINT REFERENCES orders (id)
+);
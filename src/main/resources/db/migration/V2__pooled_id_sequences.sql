@@ -0,0 +1,12 @@
+-- Move ids from IDENTITY columns to sequences used by Hibernate's pooled optimizer (allocationSize = 50)
+CREATE SEQUENCE IF NOT EXISTS orders_seq INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS order_items_seq INCREMENT BY 50;
+
+ALTER TABLE orders ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE orders ALTER COLUMN id DROP DEFAULT;
+ALTER TABLE order_items ALTER COLUMN id DROP IDENTITY IF EXISTS;
+ALTER TABLE order_items ALTER COLUMN id DROP DEFAULT;
+
+-- The pooled optimizer hands out (value - 49 .. value], so the next value must land 50 above the current max
+SELECT setval('orders_seq', GREATEST((SELECT MAX(id) FROM orders), 1));
+SELECT setval('order_items_seq', GREATEST((SELECT MAX(id) FROM order_items), 1));
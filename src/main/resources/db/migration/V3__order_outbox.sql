@@ -0,0 +1,13 @@
+CREATE SEQUENCE IF NOT EXISTS order_outbox_seq INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS order_outbox (
+    id            BIGINT       NOT NULL PRIMARY KEY,
+    routing_key   VARCHAR(255) NOT NULL,
+    payload       BYTEA        NOT NULL,
+    created_at    TIMESTAMP(6) NOT NULL,
+    dispatched_at TIMESTAMP(6)
+);
+
+-- The relay only scans pending rows, pruning only dispatched ones
+CREATE INDEX IF NOT EXISTS idx_order_outbox_pending ON order_outbox (id) WHERE dispatched_at IS NULL;
+CREATE INDEX IF NOT EXISTS idx_order_outbox_dispatched_at ON order_outbox (dispatched_at) WHERE dispatched_at IS NOT NULL;
@@ -0,0 +1,2 @@
+-- Optimistic locking: every write to an order bumps its version, existing rows start at 0
+ALTER TABLE orders ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,2 @@
+-- Each outbox row keeps the content type its payload was encoded with, rows written before are JSON
+ALTER TABLE order_outbox ADD COLUMN IF NOT EXISTS content_type VARCHAR(64) NOT NULL DEFAULT 'text/plain';
@@ -0,0 +1,7 @@
+-- Ids of the stock events already applied, a redelivered message finds its id here and is skipped
+CREATE TABLE IF NOT EXISTS processed_messages (
+    message_id   VARCHAR(255) NOT NULL PRIMARY KEY,
+    processed_at TIMESTAMP(6) NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS idx_processed_messages_processed_at ON processed_messages (processed_at);
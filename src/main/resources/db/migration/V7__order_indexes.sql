@@ -0,0 +1,7 @@
+-- Access paths of the client history and of the item lookups, built without blocking writes (see the .conf file).
+-- id DESC matches the "created_at desc, id desc" order of the keyset pages, so they are read straight off the index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_orders_client_created ON orders (client_id, created_at DESC, id DESC);
+-- order_id after item_id: the orders holding a product are read from the index alone, without visiting the lines
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_items_item_order ON order_items (item_id, order_id);
+-- Postgres does not index foreign keys: loading or deleting an order's lines scanned the whole table
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_items_order_id ON order_items (order_id);
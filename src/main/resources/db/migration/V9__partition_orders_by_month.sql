@@ -0,0 +1,134 @@
+-- Monthly range partitions on created_at: the recent months the service works on keep small indexes that stay
+-- in cache, old months shrink as OrderArchiver moves their closed orders to the archive tables, then are dropped.
+-- The tables are rebuilt and their rows copied with writes blocked: run it in a maintenance window.
+
+-- Creates the missing monthly partitions of both tables, from the month of from_month to the one of to_month.
+-- Rows of a month without partition land in the default one, which then has to be emptied before that month
+-- can be created: keep partitions ahead of time.
+CREATE OR REPLACE FUNCTION create_order_partitions(from_month DATE, to_month DATE) RETURNS INTEGER AS $$
+DECLARE
+    month   DATE := date_trunc('month', from_month);
+    suffix  TEXT;
+    created INTEGER := 0;
+BEGIN
+    -- several instances run the maintenance job
+    PERFORM pg_advisory_xact_lock(hashtext('order_partitions'));
+    WHILE month <= to_month LOOP
+        suffix := to_char(month, 'YYYYMM');
+        IF to_regclass('orders_p' || suffix) IS NULL THEN
+            EXECUTE format('CREATE TABLE orders_p%s PARTITION OF orders FOR VALUES FROM (%L) TO (%L)',
+                           suffix, month, (month + INTERVAL '1 month')::DATE);
+            EXECUTE format('CREATE TABLE order_items_p%s PARTITION OF order_items FOR VALUES FROM (%L) TO (%L)',
+                           suffix, month, (month + INTERVAL '1 month')::DATE);
+            created := created + 1;
+        END IF;
+        month := (month + INTERVAL '1 month')::DATE;
+    END LOOP;
+    RETURN created;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Detaches and drops the monthly partitions ending before before_month that archival left empty.
+-- A month only receives rows while it is the current one, so an old empty partition stays empty.
+CREATE OR REPLACE FUNCTION drop_empty_order_partitions(before_month DATE) RETURNS INTEGER AS $$
+DECLARE
+    suffix    TEXT;
+    not_empty BOOLEAN;
+    dropped   INTEGER := 0;
+BEGIN
+    PERFORM pg_advisory_xact_lock(hashtext('order_partitions'));
+    FOR suffix IN
+        SELECT substr(c.relname, 9)
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = 'orders'::REGCLASS
+          AND c.relname ~ '^orders_p[0-9]{6}$'
+          AND (to_date(substr(c.relname, 9), 'YYYYMM') + INTERVAL '1 month')::DATE <= before_month
+        ORDER BY 1
+    LOOP
+        EXECUTE format('SELECT EXISTS (SELECT 1 FROM orders_p%s)', suffix) INTO not_empty;
+        CONTINUE WHEN not_empty;
+        -- lines first: an orders partition cannot be detached while lines still reference it
+        EXECUTE format('ALTER TABLE order_items DETACH PARTITION order_items_p%s', suffix);
+        EXECUTE format('ALTER TABLE orders DETACH PARTITION orders_p%s', suffix);
+        EXECUTE format('DROP TABLE order_items_p%s, orders_p%s', suffix, suffix);
+        dropped := dropped + 1;
+    END LOOP;
+    RETURN dropped;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Lines are partitioned by the creation date of their order, copied onto them
+ALTER TABLE order_items ADD COLUMN order_created_at TIMESTAMP(6);
+UPDATE order_items i SET order_created_at = o.created_at FROM orders o WHERE o.id = i.order_id;
+-- lines of no order were never reachable, they have no partition to go to
+DELETE FROM order_items WHERE order_created_at IS NULL;
+
+-- Index names are per schema, the partitioned tables reuse them
+DROP INDEX IF EXISTS idx_orders_client_created;
+DROP INDEX IF EXISTS idx_order_items_item_order;
+DROP INDEX IF EXISTS idx_order_items_order_id;
+ALTER TABLE order_items RENAME TO order_items_unpartitioned;
+ALTER TABLE orders RENAME TO orders_unpartitioned;
+
+-- The partition key must be part of the primary key: ids still come from orders_seq and order_items_seq alone
+CREATE TABLE orders (
+    id         BIGINT       NOT NULL,
+    client_id  VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    status     VARCHAR(255) NOT NULL,
+    version    BIGINT       NOT NULL DEFAULT 0,
+    CONSTRAINT pk_orders PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE order_items (
+    id               BIGINT       NOT NULL,
+    item_id          VARCHAR(255) NOT NULL,
+    quantity         INTEGER      NOT NULL,
+    unit_price       DOUBLE PRECISION,
+    order_id         BIGINT,
+    order_created_at TIMESTAMP(6) NOT NULL,
+    CONSTRAINT pk_order_items PRIMARY KEY (id, order_created_at),
+    CONSTRAINT fk_order_items_order FOREIGN KEY (order_id, order_created_at) REFERENCES orders (id, created_at)
+) PARTITION BY RANGE (order_created_at);
+
+CREATE TABLE orders_default PARTITION OF orders DEFAULT;
+CREATE TABLE order_items_default PARTITION OF order_items DEFAULT;
+
+SELECT create_order_partitions(
+        COALESCE((SELECT MIN(created_at) FROM orders_unpartitioned), now())::DATE,
+        (now() + INTERVAL '3 months')::DATE);
+
+INSERT INTO orders (id, client_id, created_at, status, version)
+SELECT id, client_id, created_at, status, version FROM orders_unpartitioned;
+INSERT INTO order_items (id, item_id, quantity, unit_price, order_id, order_created_at)
+SELECT id, item_id, quantity, unit_price, order_id, order_created_at FROM order_items_unpartitioned;
+
+DROP TABLE order_items_unpartitioned;
+DROP TABLE orders_unpartitioned;
+
+-- Same access paths as V7, built once the rows are in; each partition gets its own copy
+CREATE INDEX idx_orders_client_created ON orders (client_id, created_at DESC, id DESC);
+CREATE INDEX idx_order_items_item_order ON order_items (item_id, order_id);
+CREATE INDEX idx_order_items_order_id ON order_items (order_id);
+
+-- Cold storage of the closed orders OrderArchiver moves out, nothing in the service reads them back
+CREATE TABLE orders_archive (
+    id          BIGINT       NOT NULL PRIMARY KEY,
+    client_id   VARCHAR(255) NOT NULL,
+    created_at  TIMESTAMP(6) NOT NULL,
+    status      VARCHAR(255) NOT NULL,
+    version     BIGINT       NOT NULL,
+    archived_at TIMESTAMP(6) NOT NULL DEFAULT now()
+);
+CREATE INDEX idx_orders_archive_client_created ON orders_archive (client_id, created_at);
+
+CREATE TABLE order_items_archive (
+    id               BIGINT       NOT NULL PRIMARY KEY,
+    item_id          VARCHAR(255) NOT NULL,
+    quantity         INTEGER      NOT NULL,
+    unit_price       DOUBLE PRECISION,
+    order_id         BIGINT       NOT NULL,
+    order_created_at TIMESTAMP(6) NOT NULL
+);
+CREATE INDEX idx_order_items_archive_order_id ON order_items_archive (order_id);
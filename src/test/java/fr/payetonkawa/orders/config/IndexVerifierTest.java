@@ -0,0 +1,68 @@
+package fr.payetonkawa.orders.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The entities' {@code @Index} declarations must produce the indexes the migration creates,
+ * tests and the load-test profile build their schema from them.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import(IndexVerifier.class)
+class IndexVerifierTest {
+
+    @Autowired
+    private IndexVerifier indexVerifier;
+
+    @Test
+    void shouldAcceptTheSchemaGeneratedFromTheEntities() {
+        assertDoesNotThrow(() -> indexVerifier.verify());
+    }
+
+    @Test
+    void shouldReportMissingIndexes() {
+        IndexVerifier.ExpectedIndex expected = IndexVerifier.EXPECTED.get(0);
+
+        assertEquals(List.of("idx_orders_client_created is missing on orders"),
+                IndexVerifier.problems(expected, Map.of("orders_pkey", List.of("id"))));
+    }
+
+    @Test
+    void shouldReportIndexesBuiltOnOtherColumns() {
+        IndexVerifier.ExpectedIndex expected = IndexVerifier.EXPECTED.get(0);
+
+        List<String> problems = IndexVerifier.problems(expected,
+                Map.of("idx_orders_client_created", List.of("client_id", "created_at", "id")));
+
+        assertEquals(1, problems.size());
+        assertTrue(problems.get(0).startsWith("idx_orders_client_created is on [client_id, created_at, id]"));
+    }
+
+    @Test
+    void shouldReportPartitionsWithoutTheirCopyOfTheIndex() {
+        IndexVerifier.ExpectedIndex expected = IndexVerifier.EXPECTED.get(1);
+
+        List<String> problems = IndexVerifier.unindexedPartitions(expected, Map.of(
+                "order_items_p202601", Set.of("idx_order_items_item_order", "idx_order_items_order_id"),
+                "order_items_p202602", Set.of("idx_order_items_order_id")));
+
+        assertEquals(List.of("idx_order_items_item_order has no valid index attached on partition order_items_p202602"),
+                problems);
+    }
+
+    @Test
+    void shouldAcceptTablesWithoutPartitions() {
+        assertEquals(List.of(), IndexVerifier.unindexedPartitions(IndexVerifier.EXPECTED.get(0), Map.of()));
+    }
+}
@@ -0,0 +1,39 @@
+package fr.payetonkawa.orders.dto;
+
+import fr.payetonkawa.orders.entity.Order;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Timestamp;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderCursorTest {
+
+    @Test
+    void shouldRoundTripWhenEncodeThenDecode() {
+        OrderCursor cursor = new OrderCursor(1718000000123L, 42L);
+
+        OrderCursor decoded = OrderCursor.decode(cursor.encode());
+
+        assertEquals(cursor, decoded);
+    }
+
+    @Test
+    void shouldUseCreatedAtAndIdWhenOfOrder() {
+        Order order = new Order();
+        order.setId(7L);
+        order.setCreatedAt(new Timestamp(123L));
+
+        OrderCursor cursor = OrderCursor.of(order);
+
+        assertEquals(123L, cursor.createdAt());
+        assertEquals(7L, cursor.id());
+        assertEquals(order.getCreatedAt(), cursor.createdAtTimestamp());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenDecodeGarbage() {
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> OrderCursor.decode("bm8tc2VwYXJhdG9y"));
+    }
+}
@@ -21,7 +21,7 @@ class OrderDtoTest {
         item.setId(2L);
         item.setItemId("item-1");
         item.setQuantity(3);
-        item.setUnitPrice(9.99);
+        item.setUnitPriceMinor(999);
         order.setItems(List.of(item));
 
         OrderDto dto = OrderDto.fromEntity(order);
@@ -32,6 +32,38 @@ class OrderDtoTest {
         assertNotNull(dto.getItems());
         assertEquals(1, dto.getItems().size());
         assertEquals(item.getId(), dto.getItems().get(0).getId());
+        assertEquals("EUR", dto.getCurrency());
+        assertEquals(2997, dto.getTotal());
+    }
+
+    @Test
+    void shouldSumLinesExactlyInMinorUnits() {
+        Order order = new Order();
+        order.setCreatedAt(new Timestamp(1L));
+        OrderItem tenCents = new OrderItem();
+        tenCents.setItemId("item-1");
+        tenCents.setQuantity(3);
+        tenCents.setUnitPriceMinor(10);
+        OrderItem twentyCents = new OrderItem();
+        twentyCents.setItemId("item-2");
+        twentyCents.setQuantity(1);
+        twentyCents.setUnitPriceMinor(20);
+        order.setItems(List.of(tenCents, twentyCents));
+
+        // 0.1 * 3 + 0.2 is not 0.5 in doubles
+        assertEquals(50, OrderDto.fromEntity(order).getTotal());
+    }
+
+    @Test
+    void shouldDefaultAndNormalizeCurrency() {
+        OrderDto dto = new OrderDto();
+        assertEquals("EUR", dto.currencyOrDefault());
+
+        dto.setCurrency(" usd ");
+        assertEquals("USD", dto.currencyOrDefault());
+
+        dto.setCurrency("XYZ1");
+        assertThrows(IllegalArgumentException.class, dto::currencyOrDefault);
     }
 
     @Test
@@ -1,5 +1,7 @@
 package fr.payetonkawa.orders.dto;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import fr.payetonkawa.orders.entity.OrderItem;
 import org.junit.jupiter.api.Test;
 
@@ -15,14 +17,14 @@ class OrderItemDtoTest {
         item.setId(1L);
         item.setItemId("item-1");
         item.setQuantity(2);
-        item.setUnitPrice(5.5);
+        item.setUnitPriceMinor(550);
 
         OrderItemDto dto = OrderItemDto.fromEntity(item);
 
         assertEquals(item.getId(), dto.getId());
         assertEquals(item.getItemId(), dto.getItemId());
         assertEquals(item.getQuantity(), dto.getQuantity());
-        assertEquals(item.getUnitPrice(), dto.getUnitPrice());
+        assertEquals(550L, (long) dto.getUnitPriceMinor());
     }
 
     @Test
@@ -31,13 +33,13 @@ class OrderItemDtoTest {
         item1.setId(1L);
         item1.setItemId("item-1");
         item1.setQuantity(1);
-        item1.setUnitPrice(2.0);
+        item1.setUnitPriceMinor(200);
 
         OrderItem item2 = new OrderItem();
         item2.setId(2L);
         item2.setItemId("item-2");
         item2.setQuantity(2);
-        item2.setUnitPrice(3.0);
+        item2.setUnitPriceMinor(300);
 
         List<OrderItemDto> dtos = OrderItemDto.fromEntities(List.of(item1, item2));
         assertEquals(2, dtos.size());
@@ -51,14 +53,14 @@ class OrderItemDtoTest {
         dto.setId(1L);
         dto.setItemId("item-1");
         dto.setQuantity(2);
-        dto.setUnitPrice(5.5);
+        dto.setUnitPriceMinor(550L);
 
         OrderItem item = dto.toEntity();
 
         assertEquals(dto.getId(), item.getId());
         assertEquals(dto.getItemId(), item.getItemId());
         assertEquals(dto.getQuantity(), item.getQuantity());
-        assertEquals(dto.getUnitPrice(), item.getUnitPrice());
+        assertEquals(550L, item.getUnitPriceMinor());
     }
 
     @Test
@@ -66,7 +68,7 @@ class OrderItemDtoTest {
         OrderItemDto dto = new OrderItemDto();
         dto.setItemId("");
         dto.setQuantity(1);
-        dto.setUnitPrice(1.0);
+        dto.setUnitPriceMinor(100L);
 
         assertThrows(IllegalArgumentException.class, dto::toEntity);
     }
@@ -76,7 +78,7 @@ class OrderItemDtoTest {
         OrderItemDto dto = new OrderItemDto();
         dto.setItemId("item-1");
         dto.setQuantity(0);
-        dto.setUnitPrice(1.0);
+        dto.setUnitPriceMinor(100L);
 
         assertThrows(IllegalArgumentException.class, dto::toEntity);
     }
@@ -86,8 +88,27 @@ class OrderItemDtoTest {
         OrderItemDto dto = new OrderItemDto();
         dto.setItemId("item-1");
         dto.setQuantity(1);
-        dto.setUnitPrice(-1.0);
+        dto.setUnitPriceMinor(-100L);
 
         assertThrows(IllegalArgumentException.class, dto::toEntity);
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldThrowExceptionWhenToEntityWithoutUnitPrice() {
+        OrderItemDto dto = new OrderItemDto();
+        dto.setItemId("item-1");
+        dto.setQuantity(1);
+
+        assertThrows(IllegalArgumentException.class, dto::toEntity);
+    }
+
+    @Test
+    void shouldRejectDecimalUnitPriceOfFormerApi() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+
+        assertEquals(999L, (long) objectMapper.readValue("{\"itemId\":\"item-1\",\"unitPriceMinor\":999}",
+                OrderItemDto.class).getUnitPriceMinor());
+        assertThrows(JsonMappingException.class, () -> objectMapper.readValue(
+                "{\"itemId\":\"item-1\",\"unitPrice\":9.99}", OrderItemDto.class));
+    }
+}
@@ -17,12 +17,23 @@ class OrderItemTest {
         item.setId(10L);
         item.setItemId("ABC123");
         item.setQuantity(5);
-        item.setUnitPrice(9.99);
+        item.setUnitPriceMinor(999);
 
         assertEquals(10L, item.getId());
         assertEquals("ABC123", item.getItemId());
         assertEquals(5, item.getQuantity());
-        assertEquals(9.99, item.getUnitPrice());
+        assertEquals(999, item.getUnitPriceMinor());
+    }
+
+    @Test
+    void testLineTotalFailsOnOverflow() {
+        OrderItem item = new OrderItem();
+        item.setQuantity(3);
+        item.setUnitPriceMinor(999);
+        assertEquals(2997, item.lineTotalMinor());
+
+        item.setUnitPriceMinor(Long.MAX_VALUE / 2);
+        assertThrows(ArithmeticException.class, item::lineTotalMinor);
     }
 
     @Test
@@ -71,10 +82,20 @@ class OrderItemTest {
     }
 
     @Test
-    void testHashCodeAlways31() {
+    void testHashCodeFollowsItemId() {
         OrderItem item1 = new OrderItem();
         OrderItem item2 = new OrderItem();
-        assertEquals(31, item1.hashCode());
-        assertEquals(31, item2.hashCode());
+        item1.setItemId("ABC123");
+        item2.setItemId("XYZ789");
+        assertNotEquals(item1.hashCode(), item2.hashCode());
+    }
+
+    @Test
+    void testHashCodeStableWhenIdAssigned() {
+        OrderItem item = new OrderItem();
+        item.setItemId("ABC123");
+        int before = item.hashCode();
+        item.setId(42L);
+        assertEquals(before, item.hashCode());
     }
 }
\ No newline at end of file
@@ -0,0 +1,91 @@
+package fr.payetonkawa.orders.event;
+
+import com.rabbitmq.client.AMQP;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.GetResponse;
+import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.amqp.rabbit.core.ChannelCallback;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class DeadLetterEndpointTest {
+
+    private static final String DLQ = ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME;
+
+    private Channel channel;
+    private DeadLetterEndpoint endpoint;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        channel = mock(Channel.class);
+        RabbitTemplate rabbitTemplate = mock(RabbitTemplate.class);
+        when(rabbitTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<ChannelCallback<?>>getArgument(0).doInRabbit(channel));
+        endpoint = new DeadLetterEndpoint(rabbitTemplate);
+    }
+
+    @Test
+    void shouldListDeadLettersThenHandThemBack() throws Exception {
+        // Given
+        when(channel.queueDeclarePassive(DLQ)).thenReturn(new AMQP.Queue.DeclareOk.Builder().queue(DLQ).messageCount(2).build());
+        when(channel.basicGet(DLQ, false)).thenReturn(deadLetter(1, "{\"payload\":{}}"), deadLetter(2, "{}"));
+
+        // When
+        DeadLetterEndpoint.DeadLetters deadLetters = endpoint.deadLetters(1);
+
+        // Then
+        assertEquals(2, deadLetters.depth());
+        assertEquals(1, deadLetters.messages().size());
+        DeadLetterEndpoint.DeadLetter first = deadLetters.messages().get(0);
+        assertEquals("product.stock.confirmed", first.routingKey());
+        assertEquals(3, first.attempts());
+        assertEquals("MissingDataException: Payload missing orderId", first.exception());
+        assertEquals("{\"payload\":{}}", first.body());
+        verify(channel).basicNack(1, true, true);
+        verify(channel, never()).basicAck(anyLong(), anyBoolean());
+    }
+
+    @Test
+    void shouldReplayToTheOrderQueueWithAFreshRetryBudget() throws Exception {
+        // Given
+        when(channel.basicGet(DLQ, false)).thenReturn(deadLetter(1, "{}"), deadLetter(2, "{}"), null);
+
+        // When
+        int replayed = endpoint.replay(null);
+
+        // Then
+        assertEquals(2, replayed);
+        ArgumentCaptor<AMQP.BasicProperties> properties = ArgumentCaptor.forClass(AMQP.BasicProperties.class);
+        verify(channel, times(2)).basicPublish(eq(""), eq(ExchangeQueues.ORDER_QUEUE_NAME), properties.capture(), any());
+        Map<String, Object> headers = properties.getValue().getHeaders();
+        assertEquals("product.stock.confirmed", headers.get(OrderEventRecoverer.ROUTING_KEY_HEADER));
+        assertFalse(headers.containsKey(OrderEventRecoverer.ATTEMPTS_HEADER));
+        assertFalse(headers.containsKey(OrderEventRecoverer.EXCEPTION_HEADER));
+        verify(channel).basicAck(1, false);
+        verify(channel).basicAck(2, false);
+    }
+
+    private static GetResponse deadLetter(long deliveryTag, String body) {
+        AMQP.BasicProperties properties = new AMQP.BasicProperties.Builder()
+                .contentType("text/plain")
+                .headers(Map.of(
+                        OrderEventRecoverer.ROUTING_KEY_HEADER, "product.stock.confirmed",
+                        OrderEventRecoverer.ATTEMPTS_HEADER, 3,
+                        OrderEventRecoverer.EXCEPTION_HEADER, "MissingDataException: Payload missing orderId"))
+                .build();
+        Envelope envelope = new Envelope(deliveryTag, false, "", DLQ);
+        return new GetResponse(envelope, properties, body.getBytes(StandardCharsets.UTF_8), 0);
+    }
+}
@@ -1,21 +1,50 @@
 package fr.payetonkawa.orders.event;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.config.MessageDedupProperties;
 import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.exception.MissingDataException;
 import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import fr.payetonkawa.orders.messaging.StockEventDecoder;
+import fr.payetonkawa.orders.repository.OrderOwner;
 import fr.payetonkawa.orders.repository.OrderRepository;
+import fr.payetonkawa.orders.repository.ProcessedMessageRepository;
+import fr.payetonkawa.orders.service.ClientOrderStatsChanges;
+import fr.payetonkawa.orders.service.ClientOrderStatsService;
+import fr.payetonkawa.orders.service.ClientOrdersCache;
+import fr.payetonkawa.orders.service.StockDepletionService;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.InOrder;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,94 +53,415 @@ class EventListenerTest {
     @Mock
     private OrderRepository orderRepository;
 
-    @InjectMocks
+    @Spy
+    private StockEventDecoder stockEventDecoder = new StockEventDecoder();
+
+    @Mock
+    private ClientOrdersCache clientOrdersCache;
+
+    @Mock
+    private ClientOrderStatsService clientOrderStatsService;
+
+    @Mock
+    private MessageDeduplicator messageDeduplicator;
+
+    @Mock
+    private StockDepletionService stockDepletionService;
+
+    @Mock
+    private OrderEventRecoverer orderEventRecoverer;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     private EventListener eventListener;
 
+    private static final List<String> PENDING = List.of("PENDING");
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @BeforeEach
+    void setUp() {
+        eventListener = new EventListener(orderRepository, stockEventDecoder, clientOrdersCache, clientOrderStatsService,
+                messageDeduplicator, stockDepletionService, orderEventRecoverer, meterRegistry);
+        // nothing processed yet: the work runs for every message
+        lenient().when(messageDeduplicator.processOnce(any(), any())).thenAnswer(invocation -> {
+            invocation.<Consumer<Set<String>>>getArgument(1).accept(Set.of());
+            return Set.of();
+        });
+    }
+
     @Test
     void shouldUpdateOrderStatusToConfirmed() throws Exception {
         // Given
-        Order mockOrder = new Order();
-        mockOrder.setStatus("PENDING");
-        when(orderRepository.findById(1L)).thenReturn(Optional.of(mockOrder));
+        when(orderRepository.updateStatus(1L, "CONFIRMED", PENDING)).thenReturn(1);
+        when(orderRepository.findOwnersByIdIn(List.of(1L))).thenReturn(List.of(new OrderOwner("client-1", "EUR")));
 
-        ExchangeMessage exchangeMessage = ExchangeMessage.builder()
-                .payload(Map.of("orderId", 1L))
-                .build();
+        // When
+        eventListener.handleEvent(message("product.stock.confirmed", 1L));
 
-        String jsonMessage = objectMapper.writeValueAsString(exchangeMessage);
+        // Then
+        verify(orderRepository).updateStatus(1L, "CONFIRMED", PENDING);
+        verify(orderRepository, never()).findById(any());
+        verify(clientOrdersCache).evictAll(List.of("client-1"));
+        verify(clientOrderStatsService).apply(any(ClientOrderStatsChanges.class));
+    }
 
-        Message amqpMessage = mock(Message.class);
-        MessageProperties props = mock(MessageProperties.class);
-        when(amqpMessage.getMessageProperties()).thenReturn(props);
-        when(props.getReceivedRoutingKey()).thenReturn("product.stock.confirmed");
+    @Test
+    void shouldDecodeMessageByItsContentType() throws Exception {
+        // Given
+        when(orderRepository.updateStatus(4L, "CONFIRMED", PENDING)).thenReturn(1);
+        ExchangeMessage exchangeMessage = ExchangeMessage.builder().payload(Map.of("orderId", 4L)).build();
+        MessageProperties properties = routedProperties("product.stock.confirmed");
+        properties.setContentType(MessageCodec.SMILE.contentType());
 
         // When
-        eventListener.handleEvent(jsonMessage, amqpMessage);
+        eventListener.handleEvent(new Message(MessageCodec.SMILE.writer().writeValueAsBytes(exchangeMessage), properties));
 
         // Then
-        verify(orderRepository).save(mockOrder);
-        assert mockOrder.getStatus().equals("CONFIRMED");
+        verify(orderRepository).updateStatus(4L, "CONFIRMED", PENDING);
     }
 
     @Test
-    void shouldUpdateOrderStatusToFailed() throws Exception {
+    void shouldUseOriginalRoutingKeyOfARetriedMessage() throws Exception {
         // Given
-        Order mockOrder = new Order();
-        mockOrder.setStatus("PENDING");
-        when(orderRepository.findById(2L)).thenReturn(Optional.of(mockOrder));
+        Message retried = message(ExchangeQueues.ORDER_QUEUE_NAME, 6L);
+        retried.getMessageProperties().setHeader(OrderEventRecoverer.ROUTING_KEY_HEADER, "product.stock.insufficient");
+        when(orderRepository.updateStatus(6L, "FAILED", PENDING)).thenReturn(1);
 
-        ExchangeMessage exchangeMessage = ExchangeMessage.builder()
-                .payload(Map.of("orderId", 2L))
-                .build();
+        // When
+        eventListener.handleEvent(retried);
 
-        String jsonMessage = objectMapper.writeValueAsString(exchangeMessage);
+        // Then
+        verify(orderRepository).updateStatus(6L, "FAILED", PENDING);
+    }
 
-        Message amqpMessage = mock(Message.class);
-        MessageProperties props = mock(MessageProperties.class);
-        when(amqpMessage.getMessageProperties()).thenReturn(props);
-        when(props.getReceivedRoutingKey()).thenReturn("product.stock.insufficient");
+    @Test
+    void shouldTimeProcessingAndLagBehindTheMessageTimestamp() throws Exception {
+        // Given
+        Message message = message("product.stock.confirmed", 7L);
+        message.getMessageProperties().setTimestamp(new Date(System.currentTimeMillis() - 5_000));
+
+        // When
+        eventListener.handleEvent(message);
+
+        // Then
+        Timer lag = meterRegistry.get("orders.events.consume.lag").tag("routing.key", "product.stock.confirmed").timer();
+        assertTrue(lag.totalTime(TimeUnit.MILLISECONDS) >= 5_000);
+        assertEquals(1, meterRegistry.get("orders.events.consume.latency").tag("routing.key", "product.stock.confirmed").timer().count());
+    }
+
+    @Test
+    void shouldUpdateOrderStatusToFailed() throws Exception {
+        // Given
+        when(orderRepository.updateStatus(2L, "FAILED", PENDING)).thenReturn(1);
 
         // When
-        eventListener.handleEvent(jsonMessage, amqpMessage);
+        eventListener.handleEvent(message("product.stock.insufficient", 2L));
 
         // Then
-        verify(orderRepository).save(mockOrder);
-        assert mockOrder.getStatus().equals("FAILED");
+        verify(orderRepository).updateStatus(2L, "FAILED", PENDING);
     }
 
     @Test
     void shouldHandleUnknownRoutingKeyWithoutSaving() throws Exception {
+        // When
+        eventListener.handleEvent(message("unknown.event", 999L));
+
+        // Then
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
+        verifyNoInteractions(stockEventDecoder);
+    }
+
+    @Test
+    void shouldNotFailWhenOrderToUpdateIsUnknown() throws Exception {
         // Given
-        ExchangeMessage exchangeMessage = ExchangeMessage.builder()
-                .payload(Map.of("orderId", 999L))
-                .build();
+        when(orderRepository.updateStatus(3L, "CONFIRMED", PENDING)).thenReturn(0);
+
+        // When
+        eventListener.handleEvent(message("product.stock.confirmed", 3L));
 
-        String jsonMessage = objectMapper.writeValueAsString(exchangeMessage);
+        // Then
+        verify(orderRepository).updateStatus(3L, "CONFIRMED", PENDING);
+        verifyNoInteractions(clientOrdersCache, clientOrderStatsService);
+    }
 
-        Message amqpMessage = mock(Message.class);
-        MessageProperties props = mock(MessageProperties.class);
-        when(amqpMessage.getMessageProperties()).thenReturn(props);
-        when(props.getReceivedRoutingKey()).thenReturn("unknown.event");
+    @Test
+    void shouldUpdateIdLessEventInATransaction() throws Exception {
+        // Given
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        EventListener listener = listenerWithRealDeduplicator(inTransaction);
+        when(orderRepository.updateStatus(1L, "CONFIRMED", PENDING)).thenAnswer(invocation -> {
+            assertTrue(inTransaction.get());
+            return 1;
+        });
+        when(orderRepository.findOwnersByIdIn(List.of(1L))).thenReturn(List.of(new OrderOwner("client-1", "EUR")));
+        doAnswer(invocation -> {
+            assertTrue(inTransaction.get());
+            return null;
+        }).when(clientOrderStatsService).apply(any(ClientOrderStatsChanges.class));
 
         // When
-        eventListener.handleEvent(jsonMessage, amqpMessage);
+        listener.handleEvent(message("product.stock.confirmed", 1L));
 
         // Then
-        verify(orderRepository, never()).save(any());
+        verify(orderRepository).updateStatus(1L, "CONFIRMED", PENDING);
+        verify(clientOrderStatsService).apply(any(ClientOrderStatsChanges.class));
+    }
+
+    @Test
+    void shouldLockIdLessBatchInATransaction() throws Exception {
+        // Given
+        AtomicBoolean inTransaction = new AtomicBoolean();
+        EventListener listener = listenerWithRealDeduplicator(inTransaction);
+        when(orderRepository.findAndLockByIdIn(any())).thenAnswer(invocation -> {
+            assertTrue(inTransaction.get());
+            return List.of(order(1L, "client-1", "PENDING"), order(2L, "client-2", "PENDING"));
+        });
+        when(orderRepository.updateStatuses(any())).thenReturn(2);
+
+        // When
+        listener.handleBatch(List.of(message("product.stock.confirmed", 1L), message("product.stock.insufficient", 2L)));
+
+        // Then
+        verify(orderRepository).updateStatuses(Map.of(1L, OrderStatus.CONFIRMED, 2L, OrderStatus.FAILED));
+        verify(clientOrderStatsService).apply(any(ClientOrderStatsChanges.class));
     }
 
     @Test
     void shouldThrowExceptionOnMalformedJson() {
         // Given
-        String badJson = "not a json";
-        Message amqpMessage = mock(Message.class);
-        MessageProperties props = mock(MessageProperties.class);
-        when(amqpMessage.getMessageProperties()).thenReturn(props);
-        when(props.getReceivedRoutingKey()).thenReturn("product.stock.confirmed");
+        Message amqpMessage = new Message("not a json".getBytes(StandardCharsets.UTF_8), routedProperties("product.stock.confirmed"));
+
+        // Then
+        assertThrows(Exception.class, () -> eventListener.handleEvent(amqpMessage));
+    }
+
+    @Test
+    void shouldUpdateWholeBatchInOneStatement() throws Exception {
+        // Given
+        List<Message> batch = List.of(
+                message("product.stock.confirmed", 1L),
+                message("product.stock.insufficient", 2L),
+                message("product.stock.confirmed", 3L));
+        when(orderRepository.findAndLockByIdIn(any())).thenReturn(List.of(
+                order(1L, "client-1", "PENDING"), order(2L, "client-2", "PENDING"), order(3L, "client-1", "PENDING")));
+        when(orderRepository.updateStatuses(any())).thenReturn(3);
+
+        // When
+        eventListener.handleBatch(batch);
+
+        // Then
+        verify(orderRepository).updateStatuses(Map.of(1L, OrderStatus.CONFIRMED, 2L, OrderStatus.FAILED, 3L, OrderStatus.CONFIRMED));
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
+        verify(clientOrdersCache).evictAll(Set.of("client-1", "client-2"));
+        verify(clientOrderStatsService).apply(any(ClientOrderStatsChanges.class));
+    }
+
+    @Test
+    void shouldKeepFirstStatusAndDeadLetterMalformedEventsInBatch() throws Exception {
+        // Given
+        Message malformed = new Message("not a json".getBytes(StandardCharsets.UTF_8), routedProperties("product.stock.confirmed"));
+        List<Message> batch = List.of(
+                message("product.stock.confirmed", 1L),
+                malformed,
+                message("unknown.event", 2L),
+                message("product.stock.insufficient", 1L));
+        when(orderRepository.findAndLockByIdIn(any())).thenReturn(List.of(order(1L, "client-1", "PENDING")));
+
+        // When
+        eventListener.handleBatch(batch);
+
+        // Then
+        InOrder inOrder = inOrder(orderRepository, orderEventRecoverer);
+        inOrder.verify(orderRepository).updateStatuses(Map.of(1L, OrderStatus.CONFIRMED));
+        inOrder.verify(orderEventRecoverer).recover(eq(malformed), any(Throwable.class));
+        verifyNoMoreInteractions(orderEventRecoverer);
+    }
+
+    @Test
+    void shouldNotDeadLetterMalformedEventsOfFailedBatch() throws Exception {
+        // Given
+        Message malformed = new Message("not a json".getBytes(StandardCharsets.UTF_8), routedProperties("product.stock.confirmed"));
+        List<Message> batch = List.of(message("product.stock.confirmed", 1L), malformed);
+        when(orderRepository.findAndLockByIdIn(any())).thenThrow(new IllegalStateException("database down"));
+
+        // Then: the container hands the whole batch to the recoverer, the malformed message with it
+        assertThrows(IllegalStateException.class, () -> eventListener.handleBatch(batch));
+        verifyNoInteractions(orderEventRecoverer);
+    }
+
+    @Test
+    void shouldNotWriteWhenBatchHasNothingToApply() {
+        // When
+        eventListener.handleBatch(List.of(new Message(new byte[0], routedProperties("unknown.event"))));
+
+        // Then
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void shouldSkipAlreadyProcessedMessage() throws Exception {
+        // Given
+        Message redelivered = message("product.stock.confirmed", 5L);
+        redelivered.getMessageProperties().setMessageId("msg-5");
+        doAnswer(invocation -> {
+            invocation.<Consumer<Set<String>>>getArgument(1).accept(Set.of("msg-5"));
+            return Set.of("msg-5");
+        }).when(messageDeduplicator).processOnce(eq(List.of("msg-5")), any());
+
+        // When
+        eventListener.handleEvent(redelivered);
+
+        // Then
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
+        verifyNoInteractions(clientOrdersCache);
+    }
+
+    @Test
+    void shouldKeyBatchMessagesByMessageIdThenCorrelationIdAndSkipProcessedOnes() throws Exception {
+        // Given
+        Message byMessageId = message("product.stock.confirmed", 1L);
+        byMessageId.getMessageProperties().setMessageId("msg-1");
+        Message byCorrelationId = new Message(objectMapper.writeValueAsBytes(ExchangeMessage.builder()
+                .correlationId("corr-2")
+                .payload(Map.of("orderId", 2L))
+                .build()), routedProperties("product.stock.confirmed"));
+        Message withoutId = message("product.stock.insufficient", 3L);
+        List<String> ids = Arrays.asList("msg-1", "corr-2", null);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Set<String>>>getArgument(1).accept(Set.of("corr-2"));
+            return Set.of("corr-2");
+        }).when(messageDeduplicator).processOnce(eq(ids), any());
+        Map<Long, OrderStatus> expected = new LinkedHashMap<>();
+        expected.put(1L, OrderStatus.CONFIRMED);
+        expected.put(3L, OrderStatus.FAILED);
+        when(orderRepository.findAndLockByIdIn(expected.keySet()))
+                .thenReturn(List.of(order(1L, "client-1", "PENDING"), order(3L, "client-3", "PENDING")));
+        when(orderRepository.updateStatuses(expected)).thenReturn(2);
+
+        // When
+        eventListener.handleBatch(List.of(byMessageId, byCorrelationId, withoutId));
+
+        // Then
+        verify(orderRepository).updateStatuses(expected);
+    }
+
+    @Test
+    void shouldFailPendingOrdersOfDepletedItemWithoutDeduplication() throws Exception {
+        // When
+        eventListener.handleEvent(depletion("item-1"));
+
+        // Then
+        verify(stockDepletionService).failPendingOrders("item-1");
+        verifyNoInteractions(messageDeduplicator);
+        verify(orderRepository, never()).updateStatus(any(), any(), any());
+    }
+
+    @Test
+    void shouldThrowMissingDataWhenDepletionHasNoItemId() throws Exception {
+        // Given
+        Message withoutItemId = message(EventListener.ITEM_DEPLETED, 1L);
+
+        // Then
+        assertThrows(MissingDataException.class, () -> eventListener.handleEvent(withoutItemId));
+        verifyNoInteractions(stockDepletionService);
+    }
+
+    @Test
+    void shouldFailPendingOrdersOfEachDepletedItemOnceAfterBatchStatusUpdates() throws Exception {
+        // Given
+        List<Message> batch = List.of(
+                depletion("item-1"),
+                message("product.stock.confirmed", 1L),
+                depletion("item-2"),
+                depletion("item-1"),
+                message(EventListener.ITEM_DEPLETED, 2L));
+        when(orderRepository.findAndLockByIdIn(any())).thenReturn(List.of(order(1L, "client-1", "PENDING")));
+        when(orderRepository.updateStatuses(any())).thenReturn(1);
+
+        // When
+        eventListener.handleBatch(batch);
+
+        // Then
+        InOrder inOrder = inOrder(orderRepository, stockDepletionService);
+        inOrder.verify(orderRepository).updateStatuses(Map.of(1L, OrderStatus.CONFIRMED));
+        inOrder.verify(stockDepletionService).failPendingOrders("item-1");
+        inOrder.verify(stockDepletionService).failPendingOrders("item-2");
+        verifyNoMoreInteractions(stockDepletionService);
+    }
+
+    @Test
+    void shouldOnlyMoveAndCountOrdersStillPendingOnceLocked() {
+        // Given
+        List<Message> batch = List.of(message("product.stock.confirmed", 1L), message("product.stock.confirmed", 2L));
+        when(orderRepository.findAndLockByIdIn(any()))
+                .thenReturn(List.of(order(1L, "client-1", "CANCELLED"), order(2L, "client-2", "PENDING")));
+        when(orderRepository.updateStatuses(Map.of(2L, OrderStatus.CONFIRMED))).thenReturn(1);
+
+        // When
+        eventListener.handleBatch(batch);
 
         // Then
-        assertThrows(Exception.class, () -> eventListener.handleEvent(badJson, amqpMessage));
+        verify(orderRepository).updateStatuses(Map.of(2L, OrderStatus.CONFIRMED));
+        verify(clientOrdersCache).evictAll(Set.of("client-2"));
+    }
+
+    @Test
+    void shouldNotWriteWhenNoOrderOfTheBatchIsPendingAnyMore() {
+        // Given
+        when(orderRepository.findAndLockByIdIn(any())).thenReturn(List.of(order(1L, "client-1", "FAILED")));
+
+        // When
+        eventListener.handleBatch(List.of(message("product.stock.confirmed", 1L)));
+
+        // Then
+        verify(orderRepository, never()).updateStatuses(any());
+        verifyNoInteractions(clientOrderStatsService, clientOrdersCache);
+    }
+
+    /** A listener on a real deduplicator, whose transaction template flags the work it runs. */
+    private EventListener listenerWithRealDeduplicator(AtomicBoolean inTransaction) {
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            inTransaction.set(true);
+            try {
+                invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            } finally {
+                inTransaction.set(false);
+            }
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        MessageDeduplicator deduplicator = new MessageDeduplicator(mock(ProcessedMessageRepository.class),
+                transactionTemplate, new MessageDedupProperties(1_000, 0.01, Duration.ofDays(7)));
+        return new EventListener(orderRepository, stockEventDecoder, clientOrdersCache, clientOrderStatsService,
+                deduplicator, stockDepletionService, orderEventRecoverer, meterRegistry);
+    }
+
+    private static Order order(Long id, String clientId, String status) {
+        Order order = new Order();
+        order.setId(id);
+        order.setClientId(clientId);
+        order.setStatus(status);
+        return order;
+    }
+
+    private Message depletion(String itemId) throws Exception {
+        ExchangeMessage exchangeMessage = ExchangeMessage.builder()
+                .payload(Map.of("itemId", itemId))
+                .build();
+        return new Message(objectMapper.writeValueAsBytes(exchangeMessage), routedProperties(EventListener.ITEM_DEPLETED));
+    }
+
+    private Message message(String routingKey, Long orderId) throws Exception {
+        ExchangeMessage exchangeMessage = ExchangeMessage.builder()
+                .payload(Map.of("orderId", orderId))
+                .build();
+        return new Message(objectMapper.writeValueAsBytes(exchangeMessage), routedProperties(routingKey));
+    }
+
+    private static MessageProperties routedProperties(String routingKey) {
+        MessageProperties properties = new MessageProperties();
+        properties.setReceivedRoutingKey(routingKey);
+        return properties;
     }
 }
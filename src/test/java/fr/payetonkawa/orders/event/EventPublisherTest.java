@@ -1,58 +1,198 @@
 package fr.payetonkawa.orders.event;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.gson.Gson;
+import fr.payetonkawa.orders.config.OutboxProperties;
+import fr.payetonkawa.orders.entity.OutboxEvent;
 import fr.payetonkawa.orders.messaging.ExchangeMessage;
 import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import fr.payetonkawa.orders.messaging.MessageCodec;
+import fr.payetonkawa.orders.messaging.OrderCreated;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import fr.payetonkawa.orders.messaging.OrderUpdated;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
-import org.springframework.amqp.core.AmqpTemplate;
+import org.springframework.amqp.AmqpException;
+import org.springframework.amqp.AmqpTimeoutException;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class EventPublisherTest {
 
-    private AmqpTemplate amqpTemplate;
+    private RabbitTemplate rabbitTemplate;
     private EventPublisher eventPublisher;
     private Gson gson;
+    private SimpleMeterRegistry meterRegistry;
 
     @BeforeEach
     void setUp() {
-        amqpTemplate = mock(AmqpTemplate.class);
-        eventPublisher = new EventPublisher(amqpTemplate);
+        rabbitTemplate = mock(RabbitTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        eventPublisher = new EventPublisher(rabbitTemplate,
+                new OutboxProperties(200, Duration.ofSeconds(1), Duration.ofHours(24)), meterRegistry);
         gson = new Gson();
     }
 
     @Test
-    void sendEvent_shouldSetFieldsAndPublishMessage() {
+    void serialize_shouldSetFieldsAndReturnJsonBytes() {
         // Arrange
-        String routingKey = "order.created";
         ExchangeMessage message = new ExchangeMessage();
         message.setPayload("test-payload");
 
         // Act
-        eventPublisher.sendEvent(routingKey, message);
+        byte[] body = eventPublisher.serialize("order.deleted", message);
+
+        // Assert
+        assertEquals("order.deleted", message.getRoutingKey());
+        assertEquals(gson.toJson(message), new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void serialize_shouldNotLeakPreviousMessage() {
+        ExchangeMessage large = new ExchangeMessage();
+        large.setPayload("x".repeat(4096));
+        ExchangeMessage small = new ExchangeMessage();
+        small.setPayload("y");
+
+        eventPublisher.serialize("order.created", large);
+        byte[] body = eventPublisher.serialize("order.created", small);
+
+        assertEquals(gson.toJson(small), new String(body, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void serialize_shouldKeepWireFormatForTypedPayloads() {
+        // Arrange
+        List<OrderLine> lines = List.of(new OrderLine("item-1", 2), new OrderLine("item-2", 1));
+        ExchangeMessage created = ExchangeMessage.builder().payload(new OrderCreated(42L, "client-1", lines)).build();
+        ExchangeMessage updated = ExchangeMessage.builder()
+                .payload(OrderUpdated.full(42L, "client-1", lines, lines.subList(0, 1)))
+                .build();
+
+        // Act
+        byte[] createdBody = eventPublisher.serialize("order.created", created);
+        byte[] updatedBody = eventPublisher.serialize("order.updated", updated);
+
+        // Assert
+        assertEquals("{\"exchangeId\":\"global.events\",\"routingKey\":\"order.created\",\"type\":\"order.created\","
+                        + "\"payload\":{\"orderId\":42,\"clientId\":\"client-1\",\"items\":"
+                        + "[{\"itemId\":\"item-1\",\"quantity\":2},{\"itemId\":\"item-2\",\"quantity\":1}]}}",
+                new String(createdBody, StandardCharsets.UTF_8));
+        assertEquals(gson.toJson(created), new String(createdBody, StandardCharsets.UTF_8));
+        // absent delta fields are left out, exactly as Gson drops nulls
+        assertEquals(gson.toJson(updated), new String(updatedBody, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void publishConfirmed_shouldSendAllThenCompleteOnAcks() {
+        // Arrange
+        OutboxEvent created = outboxEvent(1L, "order.created");
+        OutboxEvent deleted = outboxEvent(2L, "order.deleted");
+        confirmEverySend(true);
+
+        // Act
+        eventPublisher.publishConfirmed(List.of(created, deleted));
+
+        // Assert
+        verify(rabbitTemplate).send(eq(ExchangeQueues.EXCHANGE_NAME), eq("order.created"), any(Message.class), any(CorrelationData.class));
+        verify(rabbitTemplate).send(eq(ExchangeQueues.EXCHANGE_NAME), eq("order.deleted"), any(Message.class), any(CorrelationData.class));
+        assertEquals(1, meterRegistry.get("orders.events.publish.latency").tag("routing.key", "order.created").timer().count());
+        assertEquals(1, meterRegistry.get("orders.events.publish.latency").tag("routing.key", "order.deleted").timer().count());
+        assertEquals(0, meterRegistry.get("orders.events.publish.inflight").gauge().value());
+    }
+
+    @Test
+    void publishConfirmed_shouldSendEachEventWithItsContentType() {
+        // Arrange
+        OutboxEvent json = outboxEvent(1L, "order.created");
+        OutboxEvent cbor = outboxEvent(2L, "order.created");
+        cbor.setContentType(MessageCodec.CBOR.contentType());
+        confirmEverySend(true);
+
+        // Act
+        eventPublisher.publishConfirmed(List.of(json, cbor));
 
         // Assert
-        assertEquals(ExchangeQueues.EXCHANGE_NAME, message.getExchangeId());
-        assertEquals(routingKey, message.getRoutingKey());
-        assertEquals(routingKey, message.getType());
+        ArgumentCaptor<Message> sent = ArgumentCaptor.forClass(Message.class);
+        verify(rabbitTemplate, times(2)).send(anyString(), anyString(), sent.capture(), any(CorrelationData.class));
+        assertEquals(MessageProperties.CONTENT_TYPE_TEXT_PLAIN, sent.getAllValues().get(0).getMessageProperties().getContentType());
+        assertEquals("application/cbor", sent.getAllValues().get(1).getMessageProperties().getContentType());
+        assertNull(sent.getAllValues().get(1).getMessageProperties().getContentEncoding());
+    }
 
-        ArgumentCaptor<String> exchangeCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> routingKeyCaptor = ArgumentCaptor.forClass(String.class);
-        ArgumentCaptor<String> payloadCaptor = ArgumentCaptor.forClass(String.class);
+    @Test
+    void serialize_shouldEncodeSameTreeWithBinaryCodecs() throws Exception {
+        // Arrange
+        ExchangeMessage message = ExchangeMessage.builder()
+                .payload(new OrderCreated(42L, "client-1", List.of(new OrderLine("item-1", 2))))
+                .build();
+        byte[] json = eventPublisher.serialize("order.created", message);
+
+        for (MessageCodec codec : List.of(MessageCodec.CBOR, MessageCodec.SMILE)) {
+            // Act
+            byte[] body = eventPublisher.serialize("order.created", message, codec);
 
-        verify(amqpTemplate, times(1)).convertAndSend(
-                exchangeCaptor.capture(),
-                routingKeyCaptor.capture(),
-                payloadCaptor.capture()
-        );
+            // Assert
+            ObjectMapper reader = new ObjectMapper(codec.factory());
+            assertEquals(new ObjectMapper().readTree(json), reader.readTree(body), codec.name());
+        }
+    }
 
-        assertEquals(ExchangeQueues.EXCHANGE_NAME, exchangeCaptor.getValue());
-        assertEquals(routingKey, routingKeyCaptor.getValue());
+    @Test
+    void publishConfirmed_shouldThrowAndCountWhenNacked() {
+        // Arrange
+        confirmEverySend(false);
+
+        // Act & Assert
+        assertThrows(AmqpException.class, () -> eventPublisher.publishConfirmed(List.of(outboxEvent(1L, "order.created"))));
+        assertEquals(1, meterRegistry.get("orders.events.publish.nacks").tag("routing.key", "order.created").counter().count());
+    }
+
+    @Test
+    void publishConfirmed_shouldCountFailedSendsByRoutingKey() {
+        // Arrange
+        doThrow(new AmqpException("channel closed"))
+                .when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+
+        // Act & Assert
+        assertThrows(AmqpException.class, () -> eventPublisher.publishConfirmed(List.of(outboxEvent(1L, "order.deleted"))));
+        assertEquals(1, meterRegistry.get("orders.events.publish.failures").tag("routing.key", "order.deleted").counter().count());
+        assertEquals(0, meterRegistry.get("orders.events.publish.inflight").gauge().value());
+    }
+
+    @Test
+    void publishConfirmed_shouldTimeOutWhenBrokerNeverConfirms() {
+        assertThrows(AmqpTimeoutException.class,
+                () -> eventPublisher.publishConfirmed(List.of(outboxEvent(1L, "order.created"))));
+        assertEquals(1, meterRegistry.get("orders.events.publish.inflight").gauge().value());
+    }
+
+    private void confirmEverySend(boolean ack) {
+        doAnswer(invocation -> {
+            invocation.<CorrelationData>getArgument(3).getFuture().complete(new CorrelationData.Confirm(ack, ack ? null : "nack"));
+            return null;
+        }).when(rabbitTemplate).send(anyString(), anyString(), any(Message.class), any(CorrelationData.class));
+    }
 
-        // Check that the payload is the JSON representation of the message
-        String expectedJson = gson.toJson(message);
-        assertEquals(expectedJson, payloadCaptor.getValue());
+    private static OutboxEvent outboxEvent(Long id, String routingKey) {
+        OutboxEvent event = new OutboxEvent();
+        event.setId(id);
+        event.setRoutingKey(routingKey);
+        event.setPayload("{}".getBytes(StandardCharsets.UTF_8));
+        return event;
     }
-}
\ No newline at end of file
+}
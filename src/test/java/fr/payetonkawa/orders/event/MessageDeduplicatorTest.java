@@ -0,0 +1,127 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.MessageDedupProperties;
+import fr.payetonkawa.orders.entity.ProcessedMessage;
+import fr.payetonkawa.orders.repository.ProcessedMessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class MessageDeduplicatorTest {
+
+    @Mock
+    private ProcessedMessageRepository processedMessageRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Captor
+    private ArgumentCaptor<List<ProcessedMessage>> markers;
+
+    private MessageDeduplicator deduplicator;
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(mock(TransactionStatus.class));
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        deduplicator = new MessageDeduplicator(processedMessageRepository, transactionTemplate,
+                new MessageDedupProperties(1_000, 0.01, Duration.ofDays(7)));
+    }
+
+    @Test
+    void shouldRecordNewIdsWithoutLookingThemUp() {
+        // Given
+        List<Set<String>> skipped = new ArrayList<>();
+
+        // When
+        Set<String> processed = deduplicator.processOnce(List.of("msg-1", "msg-2"), skipped::add);
+
+        // Then
+        assertTrue(processed.isEmpty());
+        assertEquals(List.of(Set.of()), skipped);
+        verify(processedMessageRepository, never()).findExistingIds(any());
+        verify(processedMessageRepository).saveAllAndFlush(markers.capture());
+        assertEquals(List.of("msg-1", "msg-2"), ids(markers.getValue()));
+    }
+
+    @Test
+    void shouldCheckTheTableOnlyForRecentIds() {
+        // Given
+        deduplicator.processOnce(List.of("msg-1"), skipped -> { });
+        when(processedMessageRepository.findExistingIds(List.of("msg-1"))).thenReturn(List.of("msg-1"));
+        List<Set<String>> skipped = new ArrayList<>();
+
+        // When
+        Set<String> processed = deduplicator.processOnce(List.of("msg-1", "msg-3"), skipped::add);
+
+        // Then
+        assertEquals(Set.of("msg-1"), processed);
+        assertEquals(List.of(Set.of("msg-1")), skipped);
+        verify(processedMessageRepository, times(2)).saveAllAndFlush(markers.capture());
+        assertEquals(List.of("msg-3"), ids(markers.getValue()));
+    }
+
+    @Test
+    void shouldCheckEveryIdWhenOneWasRecordedWithoutTheFilterKnowingIt() {
+        // Given
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .doReturn(List.of())
+                .when(processedMessageRepository).saveAllAndFlush(anyList());
+        when(processedMessageRepository.findExistingIds(Set.of("msg-1", "msg-2"))).thenReturn(List.of("msg-2"));
+        List<Set<String>> skipped = new ArrayList<>();
+
+        // When
+        Set<String> processed = deduplicator.processOnce(List.of("msg-1", "msg-2"), skipped::add);
+
+        // Then
+        assertEquals(Set.of("msg-2"), processed);
+        assertEquals(List.of(Set.of("msg-2")), skipped);
+    }
+
+    @Test
+    void shouldRunWorkInATransactionWithoutRecordingForMessagesWithoutId() {
+        // Given
+        List<Set<String>> skipped = new ArrayList<>();
+
+        // When
+        Set<String> processed = deduplicator.processOnce(Arrays.asList(null, null), skipped::add);
+
+        // Then
+        assertTrue(processed.isEmpty());
+        assertEquals(List.of(Set.of()), skipped);
+        verify(transactionTemplate).executeWithoutResult(any());
+        verifyNoInteractions(processedMessageRepository);
+    }
+
+    @Test
+    void isProcessedShouldAcceptNullIds() {
+        assertFalse(MessageDeduplicator.isProcessed(Set.of("msg-1"), null));
+        assertTrue(MessageDeduplicator.isProcessed(Set.of("msg-1"), "msg-1"));
+    }
+
+    private static List<String> ids(List<ProcessedMessage> markers) {
+        return markers.stream().map(ProcessedMessage::getId).toList();
+    }
+}
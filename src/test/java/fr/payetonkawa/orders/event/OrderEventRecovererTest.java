@@ -0,0 +1,115 @@
+package fr.payetonkawa.orders.event;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import fr.payetonkawa.orders.config.ListenerRetryProperties;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.messaging.ExchangeQueues;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class OrderEventRecovererTest {
+
+    private RabbitTemplate rabbitTemplate;
+    private SimpleMeterRegistry meterRegistry;
+    private OrderEventRecoverer recoverer;
+
+    @BeforeEach
+    void setUp() {
+        rabbitTemplate = mock(RabbitTemplate.class);
+        meterRegistry = new SimpleMeterRegistry();
+        recoverer = new OrderEventRecoverer(rabbitTemplate,
+                new ListenerRetryProperties(3, Duration.ofSeconds(1), 4), meterRegistry);
+    }
+
+    @Test
+    void shouldBackOffThroughTheDelayQueues() {
+        // Given
+        Message message = message("product.stock.confirmed");
+
+        // When
+        recoverer.recover(message, failed(new QueryTimeoutException("database down")));
+
+        // Then
+        verify(rabbitTemplate).send("", "service.order.queue.retry.1000ms", message);
+        assertEquals(1, OrderEventRecoverer.attempts(message));
+        assertEquals("product.stock.confirmed", message.getMessageProperties().getHeader(OrderEventRecoverer.ROUTING_KEY_HEADER));
+        assertEquals(1, meterRegistry.get("orders.events.consume.retried").counter().count());
+
+        // When, redelivered by the delay queue and failing again
+        message.getMessageProperties().setReceivedRoutingKey(ExchangeQueues.ORDER_QUEUE_NAME);
+        recoverer.recover(message, failed(new QueryTimeoutException("database down")));
+
+        // Then
+        verify(rabbitTemplate).send("", "service.order.queue.retry.4000ms", message);
+        assertEquals(2, OrderEventRecoverer.attempts(message));
+        assertEquals("product.stock.confirmed", OrderEventRecoverer.routingKey(message));
+    }
+
+    @Test
+    void shouldDeadLetterOnceRetriesAreExhausted() {
+        // Given
+        Message message = message("product.stock.confirmed");
+        message.getMessageProperties().setHeader(OrderEventRecoverer.ATTEMPTS_HEADER, 3);
+
+        // When
+        recoverer.recover(message, failed(new QueryTimeoutException("database down")));
+
+        // Then
+        verify(rabbitTemplate).send("", ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, message);
+        assertEquals("QueryTimeoutException: database down",
+                message.getMessageProperties().getHeader(OrderEventRecoverer.EXCEPTION_HEADER));
+        assertEquals(1, meterRegistry.get("orders.events.consume.dead_lettered").counter().count());
+    }
+
+    @Test
+    void shouldDeadLetterMalformedMessagesWithoutRetrying() {
+        // Given
+        Message missingOrderId = message("product.stock.confirmed");
+        Message notJson = message("product.stock.insufficient");
+
+        // When
+        recoverer.recover(missingOrderId, failed(new MissingDataException("Payload missing orderId")));
+        recoverer.recover(notJson, failed(new JsonParseException(null, "Unexpected character")));
+
+        // Then
+        verify(rabbitTemplate).send("", ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, missingOrderId);
+        verify(rabbitTemplate).send("", ExchangeQueues.ORDER_DEAD_LETTER_QUEUE_NAME, notJson);
+        assertEquals(0, meterRegistry.get("orders.events.consume.retried").counter().count());
+    }
+
+    @Test
+    void shouldRetryEachMessageOfAFailedBatch() {
+        // Given
+        Message first = message("product.stock.confirmed");
+        Message second = message("product.stock.insufficient");
+
+        // When
+        recoverer.recover(List.of(first, second), failed(new QueryTimeoutException("database down")));
+
+        // Then
+        verify(rabbitTemplate).send("", "service.order.queue.retry.1000ms", first);
+        verify(rabbitTemplate).send("", "service.order.queue.retry.1000ms", second);
+    }
+
+    private static Message message(String routingKey) {
+        MessageProperties properties = new MessageProperties();
+        properties.setReceivedRoutingKey(routingKey);
+        return new Message("{}".getBytes(), properties);
+    }
+
+    private static ListenerExecutionFailedException failed(Throwable cause) {
+        return new ListenerExecutionFailedException("Listener threw exception", cause);
+    }
+}
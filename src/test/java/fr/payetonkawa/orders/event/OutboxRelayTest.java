@@ -0,0 +1,81 @@
+package fr.payetonkawa.orders.event;
+
+import fr.payetonkawa.orders.config.OutboxProperties;
+import fr.payetonkawa.orders.entity.OutboxEvent;
+import fr.payetonkawa.orders.repository.OutboxEventRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.amqp.AmqpException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class OutboxRelayTest {
+
+    private static final int BATCH_SIZE = 2;
+
+    private OutboxEventRepository outboxEventRepository;
+    private EventPublisher eventPublisher;
+    private OutboxRelay outboxRelay;
+
+    @BeforeEach
+    void setUp() {
+        outboxEventRepository = mock(OutboxEventRepository.class);
+        eventPublisher = mock(EventPublisher.class);
+        TransactionTemplate transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        outboxRelay = new OutboxRelay(outboxEventRepository, eventPublisher, transactionTemplate,
+                new OutboxProperties(BATCH_SIZE, Duration.ofSeconds(1), Duration.ofHours(1)));
+    }
+
+    @Test
+    void shouldDrainFullBatchesUntilOutboxIsEmpty() {
+        List<OutboxEvent> first = events(1L, 2L);
+        List<OutboxEvent> second = events(3L);
+        when(outboxEventRepository.lockNextBatch(BATCH_SIZE)).thenReturn(first, second);
+
+        outboxRelay.relay();
+
+        verify(eventPublisher).publishConfirmed(first);
+        verify(eventPublisher).publishConfirmed(second);
+        verify(outboxEventRepository).markDispatched(eq(List.of(1L, 2L)), any());
+        verify(outboxEventRepository).markDispatched(eq(List.of(3L)), any());
+    }
+
+    @Test
+    void shouldLeaveEventsPendingWhenBrokerFails() {
+        List<OutboxEvent> batch = events(1L);
+        when(outboxEventRepository.lockNextBatch(BATCH_SIZE)).thenReturn(batch);
+        doThrow(new AmqpException("nack")).when(eventPublisher).publishConfirmed(batch);
+
+        outboxRelay.relay();
+
+        verify(outboxEventRepository, never()).markDispatched(anyCollection(), any());
+    }
+
+    @Test
+    void shouldNotPublishWhenOutboxIsEmpty() {
+        when(outboxEventRepository.lockNextBatch(BATCH_SIZE)).thenReturn(List.of());
+
+        outboxRelay.relay();
+
+        verifyNoInteractions(eventPublisher);
+    }
+
+    private static List<OutboxEvent> events(Long... ids) {
+        List<OutboxEvent> events = new ArrayList<>();
+        for (Long id : ids) {
+            OutboxEvent event = new OutboxEvent();
+            event.setId(id);
+            event.setRoutingKey("order.created");
+            event.setPayload(new byte[0]);
+            events.add(event);
+        }
+        return events;
+    }
+}
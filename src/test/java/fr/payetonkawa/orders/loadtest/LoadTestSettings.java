@@ -0,0 +1,39 @@
+package fr.payetonkawa.orders.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Load test knobs, read from system properties ({@code mvn test -Ploadtest -Dloadtest.rate=500}).
+ *
+ * @param rate      requests started per second, whatever the response times (open model)
+ * @param warmup    initial period run at the same rate but left out of the report
+ * @param duration  measured period
+ * @param clients   number of distinct client ids the orders are spread over
+ * @param mix       relative weight of each operation
+ * @param reportDir where the HdrHistogram percentile distributions are written
+ */
+record LoadTestSettings(int rate, Duration warmup, Duration duration, int clients,
+                        Map<String, Integer> mix, Path reportDir) {
+
+    static LoadTestSettings fromSystemProperties() {
+        return new LoadTestSettings(
+                Integer.getInteger("loadtest.rate", 200),
+                Duration.ofSeconds(Long.getLong("loadtest.warmup", 10L)),
+                Duration.ofSeconds(Long.getLong("loadtest.duration", 30L)),
+                Integer.getInteger("loadtest.clients", 100),
+                parseMix(System.getProperty("loadtest.mix", "create:40,get:40,update:15,delete:5")),
+                Path.of(System.getProperty("loadtest.report-dir", "target/loadtest")));
+    }
+
+    private static Map<String, Integer> parseMix(String mix) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split(":");
+            weights.put(parts[0], Integer.parseInt(parts[1]));
+        }
+        return weights;
+    }
+}
@@ -0,0 +1,100 @@
+package fr.payetonkawa.orders.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model load generator: requests are started on a fixed schedule whatever the service's response
+ * times, so a slow server sees the queue build up instead of slowing the client down. Latency is measured
+ * from each request's intended start, which keeps coordinated omission out of the percentiles.
+ */
+class OpenModelLoadGenerator {
+
+    /** Up to one minute, 3 significant digits, in microseconds. */
+    private static final long HIGHEST_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final OrdersWorkload workload;
+    private final LoadTestSettings settings;
+    private final Map<String, Histogram> latencies = new ConcurrentHashMap<>();
+    private final AtomicLong errors = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+
+    OpenModelLoadGenerator(OrdersWorkload workload, LoadTestSettings settings) {
+        this.workload = workload;
+        this.settings = settings;
+    }
+
+    /** Runs the warm-up then the measured period and returns the measured results. */
+    Result run() throws InterruptedException {
+        drive(settings.warmup());
+        latencies.clear();
+        errors.set(0);
+        completed.set(0);
+
+        long start = System.nanoTime();
+        drive(settings.duration());
+        return new Result(Map.copyOf(latencies), completed.get(), errors.get(),
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private void drive(Duration period) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        long start = System.nanoTime();
+        long end = start + period.toNanos();
+        List<CompletableFuture<Integer>> inFlight = new ArrayList<>();
+
+        for (long intendedStart = start; intendedStart < end; intendedStart += intervalNanos) {
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            // behind schedule: start right away, the intended start still charges the delay to the latency
+            inFlight.add(fire(intendedStart));
+        }
+
+        try {
+            CompletableFuture.allOf(inFlight.toArray(CompletableFuture[]::new)).get(1, TimeUnit.MINUTES);
+        } catch (Exception e) {
+            if (e instanceof InterruptedException interrupted) {
+                throw interrupted;
+            }
+            // failures are already counted per request, a timeout leaves the stragglers out of the report
+        }
+    }
+
+    private CompletableFuture<Integer> fire(long intendedStart) {
+        String operation = workload.pick();
+        return workload.execute(operation).whenComplete((status, error) -> {
+            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intendedStart);
+            latencies.computeIfAbsent(operation, key -> new ConcurrentHistogram(HIGHEST_TRACKABLE_MICROS, 3))
+                    .recordValue(Math.min(micros, HIGHEST_TRACKABLE_MICROS));
+            completed.incrementAndGet();
+            if (error != null || status >= 400) {
+                errors.incrementAndGet();
+            }
+        });
+    }
+
+    record Result(Map<String, Histogram> latencies, long completed, long errors, Duration elapsed) {
+
+        Histogram overall() {
+            Histogram all = new Histogram(HIGHEST_TRACKABLE_MICROS, 3);
+            latencies.values().forEach(all::add);
+            return all;
+        }
+
+        double throughput() {
+            return completed / (elapsed.toNanos() / 1e9);
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package fr.payetonkawa.orders.loadtest;
+
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives the full HTTP -> service -> database -> outbox -> broker -> listener path at a fixed arrival rate
+ * and reports latency percentiles per operation. H2 in PostgreSQL mode stands in for the database and
+ * {@link StandInBrokerConfig} for RabbitMQ, so the numbers compare commits rather than predict production.
+ * <p>
+ * Excluded from the default build, run with {@code mvn test -Ploadtest} and tune with
+ * {@code -Dloadtest.rate -Dloadtest.warmup -Dloadtest.duration -Dloadtest.clients -Dloadtest.mix}.
+ * This class runs on platform threads, {@link VirtualThreadOrdersLoadTest} replays the same load on virtual threads.
+ */
+@Slf4j
+@Tag("loadtest")
+@ActiveProfiles("loadtest")
+@Import(StandInBrokerConfig.class)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class OrdersLoadTest {
+
+    @LocalServerPort
+    private int port;
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @Test
+    void shouldSustainTheConfiguredArrivalRate() throws Exception {
+        // Given
+        LoadTestSettings settings = LoadTestSettings.fromSystemProperties();
+        OrdersWorkload workload = new OrdersWorkload(URI.create("http://localhost:" + port + "/"), settings);
+
+        // When
+        OpenModelLoadGenerator.Result result = new OpenModelLoadGenerator(workload, settings).run();
+
+        // Then
+        report(settings, virtualThreads ? "virtual-threads" : "platform-threads", result);
+        assertTrue(result.completed() > 0, "No request completed");
+        assertEquals(0, result.errors(), "Requests failed under load");
+    }
+
+    private static void report(LoadTestSettings settings, String mode, OpenModelLoadGenerator.Result result)
+            throws IOException {
+        Path reportDir = Files.createDirectories(settings.reportDir().resolve(mode));
+        log.warn("📊 [{}] {} req/s offered for {}s, {} completed ({} req/s), {} errors",
+                mode, settings.rate(), settings.duration().toSeconds(), result.completed(),
+                String.format("%.1f", result.throughput()), result.errors());
+
+        for (Map.Entry<String, Histogram> operation : result.latencies().entrySet()) {
+            logPercentiles(operation.getKey(), operation.getValue());
+            writeDistribution(reportDir, operation.getKey(), operation.getValue());
+        }
+        logPercentiles("all", result.overall());
+        writeDistribution(reportDir, "all", result.overall());
+    }
+
+    private static void logPercentiles(String operation, Histogram histogram) {
+        log.warn("📊 {}: n={} p50={}ms p99={}ms p99.9={}ms max={}ms", operation, histogram.getTotalCount(),
+                millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue()));
+    }
+
+    /** HdrHistogram percentile output (in ms), which plots directly in the HdrHistogram log analyzer. */
+    private static void writeDistribution(Path reportDir, String operation, Histogram histogram) throws IOException {
+        try (PrintStream out = new PrintStream(Files.newOutputStream(reportDir.resolve(operation + ".hgrm")))) {
+            histogram.outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static String millis(long micros) {
+        return String.format("%.2f", micros / 1000.0);
+    }
+}
@@ -0,0 +1,105 @@
+package fr.payetonkawa.orders.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+
+/**
+ * The four order endpoints, picked at random according to the configured mix. Orders created during
+ * the run feed the update and delete operations.
+ */
+class OrdersWorkload {
+
+    private final URI baseUri;
+    private final int clients;
+    private final Map<String, Integer> mix;
+    private final int totalWeight;
+    private final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentLinkedQueue<long[]> createdOrders = new ConcurrentLinkedQueue<>();
+
+    OrdersWorkload(URI baseUri, LoadTestSettings settings) {
+        this.baseUri = baseUri;
+        this.clients = settings.clients();
+        this.mix = settings.mix();
+        this.totalWeight = mix.values().stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /** Name of the operation to run next. */
+    String pick() {
+        int roll = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Map.Entry<String, Integer> weight : mix.entrySet()) {
+            roll -= weight.getValue();
+            if (roll < 0) {
+                return weight.getKey();
+            }
+        }
+        return "create";
+    }
+
+    /** Runs the operation and completes with the HTTP status. */
+    CompletableFuture<Integer> execute(String operation) {
+        int client = ThreadLocalRandom.current().nextInt(clients);
+        return switch (operation) {
+            case "get" -> send(HttpRequest.newBuilder(baseUri.resolve("v1/client-" + client)).GET().build());
+            case "update" -> withExistingOrder(order -> send(HttpRequest.newBuilder(baseUri.resolve("v1/" + order[0]))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(orderBody(order[1])))
+                    .build()), true);
+            case "delete" -> withExistingOrder(order -> send(HttpRequest.newBuilder(baseUri.resolve("v1/" + order[0]))
+                    .DELETE().build()), false);
+            default -> create(client);
+        };
+    }
+
+    private CompletableFuture<Integer> create(int client) {
+        HttpRequest request = HttpRequest.newBuilder(baseUri.resolve("v1"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(orderBody(client)))
+                .build();
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray()).thenApply(response -> {
+            if (response.statusCode() == 200) {
+                try {
+                    long orderId = objectMapper.readTree(response.body()).path("id").asLong();
+                    createdOrders.add(new long[]{orderId, client});
+                } catch (Exception ignored) {
+                    // the latency is still recorded, the order just won't be reused
+                }
+            }
+            return response.statusCode();
+        });
+    }
+
+    private CompletableFuture<Integer> withExistingOrder(
+            Function<long[], CompletableFuture<Integer>> action, boolean keep) {
+        long[] order = createdOrders.poll();
+        if (order == null) {
+            return create(ThreadLocalRandom.current().nextInt(clients));
+        }
+        CompletableFuture<Integer> result = action.apply(order);
+        return keep ? result.whenComplete((status, error) -> createdOrders.add(order)) : result;
+    }
+
+    private CompletableFuture<Integer> send(HttpRequest request) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding()).thenApply(HttpResponse::statusCode);
+    }
+
+    private static String orderBody(long client) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        return """
+                {"clientId":"client-%d","items":[
+                  {"itemId":"item-%d","quantity":%d,"unitPriceMinor":999},
+                  {"itemId":"item-%d","quantity":%d,"unitPriceMinor":1950},
+                  {"itemId":"item-%d","quantity":1,"unitPriceMinor":425}]}
+                """.formatted(client, random.nextInt(1000), 1 + random.nextInt(5),
+                random.nextInt(1000), 1 + random.nextInt(5), random.nextInt(1000));
+    }
+}
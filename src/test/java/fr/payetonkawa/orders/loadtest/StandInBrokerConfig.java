@@ -0,0 +1,89 @@
+package fr.payetonkawa.orders.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.payetonkawa.orders.event.EventListener;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.connection.CorrelationData;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Primary;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-process stand-in for RabbitMQ. Published messages are confirmed after a configurable delay and
+ * every {@code order.created} is answered with a {@code product.stock.confirmed} delivered to the
+ * {@link EventListener}, as the inventory service would.
+ */
+@TestConfiguration
+public class StandInBrokerConfig {
+
+    @Bean
+    @Primary
+    public RabbitTemplate standInRabbitTemplate(ConnectionFactory connectionFactory,
+                                                ObjectProvider<EventListener> eventListener,
+                                                @Value("${loadtest.broker.confirm-latency-us:500}") long confirmLatencyMicros) {
+        return new StandInRabbitTemplate(connectionFactory, eventListener, confirmLatencyMicros);
+    }
+
+    @Slf4j
+    static class StandInRabbitTemplate extends RabbitTemplate {
+
+        private final ObjectProvider<EventListener> eventListener;
+        private final long confirmLatencyMicros;
+        private final ObjectMapper objectMapper = new ObjectMapper();
+        private final ScheduledExecutorService broker = Executors.newScheduledThreadPool(2);
+
+        StandInRabbitTemplate(ConnectionFactory connectionFactory, ObjectProvider<EventListener> eventListener,
+                              long confirmLatencyMicros) {
+            // the connection factory is never used, it only satisfies RabbitTemplate's initialization
+            super(connectionFactory);
+            this.eventListener = eventListener;
+            this.confirmLatencyMicros = confirmLatencyMicros;
+        }
+
+        @Override
+        public void send(String exchange, String routingKey, Message message) {
+            send(exchange, routingKey, message, null);
+        }
+
+        @Override
+        public void send(String exchange, String routingKey, Message message, CorrelationData correlationData) {
+            broker.schedule(() -> {
+                if (correlationData != null) {
+                    correlationData.getFuture().complete(new CorrelationData.Confirm(true, null));
+                }
+                if ("order.created".equals(routingKey)) {
+                    replyStockConfirmed(message.getBody());
+                }
+            }, confirmLatencyMicros, TimeUnit.MICROSECONDS);
+        }
+
+        @Override
+        public void destroy() {
+            broker.shutdownNow();
+            super.destroy();
+        }
+
+        private void replyStockConfirmed(byte[] orderCreated) {
+            try {
+                long orderId = objectMapper.readTree(orderCreated).path("payload").path("orderId").asLong();
+                MessageProperties properties = new MessageProperties();
+                properties.setReceivedRoutingKey("product.stock.confirmed");
+                byte[] body = ("{\"payload\":{\"orderId\":" + orderId + "}}").getBytes(StandardCharsets.UTF_8);
+                eventListener.getObject().handleEvent(new Message(body, properties));
+            } catch (Exception e) {
+                log.warn("⚠️ Stand-in inventory reply failed: {}", e.getMessage());
+            }
+        }
+    }
+}
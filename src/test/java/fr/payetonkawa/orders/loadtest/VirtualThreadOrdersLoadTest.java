@@ -0,0 +1,11 @@
+package fr.payetonkawa.orders.loadtest;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Same load as {@link OrdersLoadTest} with {@code spring.threads.virtual.enabled}, reports land next to the
+ * platform-thread ones under {@code target/loadtest/virtual-threads}.
+ */
+@TestPropertySource(properties = "spring.threads.virtual.enabled=true")
+class VirtualThreadOrdersLoadTest extends OrdersLoadTest {
+}
@@ -0,0 +1,44 @@
+package fr.payetonkawa.orders.messaging;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RotatingBloomFilterTest {
+
+    @Test
+    void shouldRememberTheLastCapacityIds() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.01);
+
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("msg-" + i);
+        }
+
+        for (int i = 4_000; i < 5_000; i++) {
+            assertTrue(filter.mightContain("msg-" + i), "msg-" + i);
+        }
+    }
+
+    @Test
+    void shouldForgetOldIdsAndKeepFalsePositivesNearTheConfiguredRate() {
+        RotatingBloomFilter filter = new RotatingBloomFilter(1_000, 0.01);
+        for (int i = 0; i < 5_000; i++) {
+            filter.put("msg-" + i);
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 1_000; i++) {
+            if (filter.mightContain("msg-" + i)) {
+                falsePositives++;
+            }
+        }
+        // two generations are checked, so up to about twice the rate of one
+        assertTrue(falsePositives < 40, falsePositives + " false positives");
+    }
+
+    @Test
+    void shouldRejectInvalidSizing() {
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(0, 0.01));
+        assertThrows(IllegalArgumentException.class, () -> new RotatingBloomFilter(100, 1));
+    }
+}
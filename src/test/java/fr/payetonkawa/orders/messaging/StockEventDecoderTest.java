@@ -0,0 +1,110 @@
+package fr.payetonkawa.orders.messaging;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StockEventDecoderTest {
+
+    private final StockEventDecoder decoder = new StockEventDecoder();
+
+    @Test
+    void shouldReadOrderIdAndCorrelationIdWhileSkippingOtherFields() throws Exception {
+        StockEvent event = decode("""
+                {"exchangeId":"global.events","routingKey":"product.stock.confirmed","type":"product.stock.confirmed",
+                 "correlationId":"corr-1",
+                 "payload":{"items":[{"itemId":"a","quantity":2,"meta":{"orderId":999}}],"orderId":42,"note":null}}
+                """);
+
+        assertEquals(new StockEvent("corr-1", 42L), event);
+    }
+
+    @Test
+    void shouldAcceptOrderIdSentAsString() throws Exception {
+        assertEquals(7L, decode("{\"payload\":{\"orderId\":\"7\"}}").orderId());
+    }
+
+    @Test
+    void shouldAcceptPayloadBeforeMetadata() throws Exception {
+        StockEvent event = decode("{\"payload\":{\"orderId\":1},\"correlationId\":null,\"routingKey\":\"x\"}");
+
+        assertEquals(new StockEvent(null, 1L), event);
+    }
+
+    @Test
+    void shouldThrowMissingDataWhenOrderIdAbsent() {
+        assertThrows(MissingDataException.class, () -> decode("{\"payload\":{\"itemId\":\"a\"}}"));
+        assertThrows(MissingDataException.class, () -> decode("{\"payload\":\"text\"}"));
+        assertThrows(MissingDataException.class, () -> decode("{\"payload\":{\"orderId\":null}}"));
+    }
+
+    @Test
+    void shouldThrowOnMalformedJson() {
+        assertThrows(JsonParseException.class, () -> decode("not a json"));
+        assertThrows(JsonParseException.class, () -> decode("[1,2]"));
+    }
+
+    @Test
+    void shouldRejectNestedIdsInsteadOfReadingTheirFields() {
+        assertThrows(JsonParseException.class, () -> decode("""
+                {"correlationId":{"payload":{"orderId":999}},"payload":{"orderId":42}}
+                """));
+        assertThrows(JsonParseException.class, () -> decode("{\"payload\":{\"orderId\":[{\"orderId\":999}]}}"));
+        assertThrows(JsonParseException.class, () -> decoder.decodeDepletion(
+                "{\"payload\":{\"itemId\":{\"itemId\":\"b\"}}}".getBytes(StandardCharsets.UTF_8), null));
+    }
+
+    @Test
+    void shouldDecodeBinaryFormatsByContentType() throws Exception {
+        ExchangeMessage message = ExchangeMessage.builder()
+                .correlationId("corr-2")
+                .payload(Map.of("orderId", 42, "items", List.of(Map.of("itemId", "a", "quantity", 2))))
+                .build();
+
+        for (MessageCodec codec : MessageCodec.values()) {
+            byte[] body = codec.writer().writeValueAsBytes(message);
+
+            assertEquals(new StockEvent("corr-2", 42L), decoder.decode(body, codec.contentType()), codec.name());
+        }
+    }
+
+    @Test
+    void shouldTreatMissingOrGenericContentTypeAsJson() throws Exception {
+        byte[] body = "{\"payload\":{\"orderId\":3}}".getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(3L, decoder.decode(body, (String) null).orderId());
+        assertEquals(3L, decoder.decode(body, "application/json; charset=UTF-8").orderId());
+        assertEquals(3L, decoder.decode(body, "application/octet-stream").orderId());
+    }
+
+    @Test
+    void shouldRejectUnknownContentType() {
+        assertThrows(IllegalArgumentException.class, () -> decoder.decode(new byte[0], "application/xml"));
+    }
+
+    @Test
+    void shouldReadItemIdOfDepletionEvent() throws Exception {
+        byte[] body = """
+                {"correlationId":"corr-9","payload":{"itemId":"item-9","warehouse":{"id":1}}}
+                """.getBytes(StandardCharsets.UTF_8);
+
+        assertEquals(new ItemDepletedEvent("corr-9", "item-9"), decoder.decodeDepletion(body, null));
+    }
+
+    @Test
+    void shouldThrowMissingDataWhenItemIdAbsent() {
+        byte[] body = "{\"payload\":{\"orderId\":1}}".getBytes(StandardCharsets.UTF_8);
+
+        assertThrows(MissingDataException.class, () -> decoder.decodeDepletion(body, null));
+    }
+
+    private StockEvent decode(String json) throws Exception {
+        return decoder.decode(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.dto.ClientOrderStatsDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+
+import java.sql.Timestamp;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the increments against H2 in PostgreSQL mode, the database of the load tests: rows created on first write,
+ * then summed, without ON CONFLICT DO UPDATE.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:client-order-stats;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE",
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(ClientOrderStatsService.class)
+class ClientOrderStatsServiceTest {
+
+    @Autowired
+    private ClientOrderStatsService clientOrderStatsService;
+    @Autowired
+    private TestEntityManager testEntityManager;
+
+    @Test
+    void shouldCreateRowsOnFirstWriteThenAddToThem() {
+        // Given
+        Timestamp first = Timestamp.valueOf("2025-03-01 10:00:00");
+        Timestamp second = Timestamp.valueOf("2025-03-02 10:00:00");
+        clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                .added(order("client-1", first, 2, 500))
+                .added(order("client-2", first, 1, 300)));
+
+        // When
+        clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                .added(order("client-1", second, 1, 400))
+                .moved("client-1", "EUR", "PENDING", "CONFIRMED")
+                .removed("client-2", "EUR", "PENDING", 300));
+        testEntityManager.clear();
+
+        // Then
+        ClientOrderStatsDto client1 = clientOrderStatsService.get("client-1");
+        assertEquals(2, client1.getOrders());
+        assertEquals(1, client1.getPending());
+        assertEquals(1, client1.getConfirmed());
+        assertEquals(Map.of("EUR", 1400L), client1.getTotalAmounts());
+        assertEquals(second.getTime(), client1.getLastOrderAt());
+
+        ClientOrderStatsDto client2 = clientOrderStatsService.get("client-2");
+        assertEquals(0, client2.getOrders());
+        assertEquals(Map.of("EUR", 0L), client2.getTotalAmounts());
+        // a deletion does not move the last order time back
+        assertEquals(first.getTime(), client2.getLastOrderAt());
+    }
+
+    @Test
+    void shouldKeepOneRowPerCurrency() {
+        // Given
+        Timestamp first = Timestamp.valueOf("2025-03-01 10:00:00");
+        Timestamp second = Timestamp.valueOf("2025-03-02 10:00:00");
+        Order inUsd = order("client-4", second, 1, 250);
+        inUsd.setCurrency("USD");
+
+        // When
+        clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                .added(order("client-4", first, 2, 500))
+                .added(inUsd));
+        testEntityManager.clear();
+
+        // Then
+        ClientOrderStatsDto stats = clientOrderStatsService.get("client-4");
+        assertEquals(2, stats.getOrders());
+        assertEquals(2, stats.getPending());
+        assertEquals(Map.of("EUR", 1000L, "USD", 250L), stats.getTotalAmounts());
+        assertEquals(second.getTime(), stats.getLastOrderAt());
+    }
+
+    @Test
+    void shouldNotMoveLastOrderTimeBackwards() {
+        // Given
+        Timestamp latest = Timestamp.valueOf("2025-03-02 10:00:00");
+        clientOrderStatsService.apply(new ClientOrderStatsChanges().added(order("client-3", latest, 1, 100)));
+
+        // When
+        clientOrderStatsService.apply(new ClientOrderStatsChanges()
+                .added(order("client-3", Timestamp.valueOf("2025-03-01 10:00:00"), 1, 100)));
+        testEntityManager.clear();
+
+        // Then
+        assertEquals(latest.getTime(), clientOrderStatsService.get("client-3").getLastOrderAt());
+    }
+
+    @Test
+    void shouldReturnEmptyStatsForUnknownClient() {
+        ClientOrderStatsDto stats = clientOrderStatsService.get("nobody");
+
+        assertEquals("nobody", stats.getClientId());
+        assertEquals(0, stats.getOrders());
+        assertTrue(stats.getTotalAmounts().isEmpty());
+        assertNull(stats.getLastOrderAt());
+    }
+
+    private static Order order(String clientId, Timestamp createdAt, int quantity, long unitPriceMinor) {
+        OrderItem item = new OrderItem();
+        item.setItemId("item-1");
+        item.setQuantity(quantity);
+        item.setUnitPriceMinor(unitPriceMinor);
+        Order order = new Order();
+        order.setClientId(clientId);
+        order.setStatus("PENDING");
+        order.setCreatedAt(createdAt);
+        order.setItems(List.of(item));
+        return order;
+    }
+}
@@ -0,0 +1,99 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.CacheConfig;
+import fr.payetonkawa.orders.config.ClientOrdersCacheProperties;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientOrdersCacheTest {
+
+    private final CacheConfig cacheConfig = new CacheConfig();
+
+    private com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache;
+    private Cache cache;
+    private ClientOrdersCache clientOrdersCache;
+
+    @BeforeEach
+    void setUp() {
+        nativeCache = cacheConfig.clientOrdersCache(new ClientOrdersCacheProperties(10, Duration.ofMinutes(10)));
+        CacheManager cacheManager = cacheConfig.cacheManager(nativeCache);
+        cache = cacheManager.getCache(CacheConfig.CLIENT_ORDERS);
+        clientOrdersCache = new ClientOrdersCache(cacheManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void shouldEvictImmediatelyOutsideTransaction() {
+        // Given
+        cache.put("client-1", orders(1, 1));
+
+        // When
+        clientOrdersCache.evict("client-1");
+
+        // Then
+        assertNull(cache.get("client-1"));
+    }
+
+    @Test
+    void shouldDeferEvictionUntilCommit() {
+        // Given
+        cache.put("client-1", orders(1, 1));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // When
+        clientOrdersCache.evictAll(List.of("client-1"));
+
+        // Then
+        assertNotNull(cache.get("client-1"), "Evicted before the transaction committed");
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNull(cache.get("client-1"));
+    }
+
+    @Test
+    void shouldEvictByWeightWhenFull() {
+        // Given: 9 units each (client, 2 orders, 6 lines) against a max weight of 10
+        cache.put("client-1", orders(2, 3));
+        cache.put("client-2", orders(2, 3));
+
+        // When
+        nativeCache.cleanUp();
+
+        // Then
+        assertEquals(1, nativeCache.estimatedSize());
+        assertEquals(1, nativeCache.stats().evictionCount());
+    }
+
+    private static List<OrderDto> orders(int count, int lines) {
+        List<OrderDto> orders = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            OrderDto order = new OrderDto();
+            order.setId((long) i);
+            List<OrderItemDto> items = new ArrayList<>();
+            for (int j = 0; j < lines; j++) {
+                items.add(new OrderItemDto());
+            }
+            order.setItems(items);
+            orders.add(order);
+        }
+        return orders;
+    }
+}
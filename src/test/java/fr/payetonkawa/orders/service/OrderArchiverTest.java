@@ -0,0 +1,147 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderArchiveProperties;
+import fr.payetonkawa.orders.repository.OrderItemRepository;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderArchiverTest {
+
+    private static final Timestamp BEFORE = Timestamp.valueOf("2025-01-15 00:00:00");
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderItemRepository orderItemRepository;
+    @Mock
+    private ClientOrdersCache clientOrdersCache;
+    @Mock
+    private StockDepletionService stockDepletionService;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OrderArchiver orderArchiver;
+
+    @BeforeEach
+    void setUp() {
+        orderArchiver = new OrderArchiver(orderRepository, orderItemRepository, clientOrdersCache,
+                stockDepletionService, transactionTemplate,
+                new OrderArchiveProperties(Duration.ofDays(90), Duration.ofDays(30), 2, 3));
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void shouldMoveLinesThenOrdersChunkByChunk() {
+        // Given
+        when(orderRepository.findArchivableIds(BEFORE, OrderArchiver.CLOSED, Limit.of(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+        when(orderRepository.findClientIdsByIdIn(any())).thenReturn(List.of("client-1"));
+        when(orderRepository.archiveByIdIn(List.of(1L, 2L), BEFORE)).thenReturn(2);
+        when(orderRepository.archiveByIdIn(List.of(3L), BEFORE)).thenReturn(1);
+
+        // When
+        int archived = orderArchiver.archive(BEFORE);
+
+        // Then
+        assertEquals(3, archived);
+        InOrder inOrder = inOrder(orderItemRepository, orderRepository);
+        inOrder.verify(orderItemRepository).archiveByOrderIdIn(List.of(1L, 2L), BEFORE);
+        inOrder.verify(orderRepository).archiveByIdIn(List.of(1L, 2L), BEFORE);
+        inOrder.verify(orderItemRepository).archiveByOrderIdIn(List.of(3L), BEFORE);
+        inOrder.verify(orderRepository).archiveByIdIn(List.of(3L), BEFORE);
+        verify(clientOrdersCache, times(2)).evictAll(List.of("client-1"));
+        verify(transactionTemplate, times(2)).execute(any());
+    }
+
+    @Test
+    void shouldNotWriteWhenNothingIsOldEnough() {
+        // Given
+        when(orderRepository.findArchivableIds(any(), any(), any())).thenReturn(List.of());
+
+        // When
+        int archived = orderArchiver.archive(BEFORE);
+
+        // Then
+        assertEquals(0, archived);
+        verifyNoInteractions(orderItemRepository, clientOrdersCache, transactionTemplate);
+    }
+
+    @Test
+    void shouldFailStalePendingOrdersChunkByChunk() {
+        // Given
+        when(orderRepository.findArchivableIds(BEFORE, OrderArchiver.PENDING, Limit.of(2)))
+                .thenReturn(List.of(1L, 2L), List.of(3L));
+        when(stockDepletionService.failPending(List.of(1L, 2L))).thenReturn(2);
+        // confirmed since it was selected
+        when(stockDepletionService.failPending(List.of(3L))).thenReturn(0);
+
+        // When
+        int failed = orderArchiver.failStalePending(BEFORE);
+
+        // Then
+        assertEquals(2, failed);
+        verify(stockDepletionService, times(2)).failPending(any());
+    }
+
+    @Test
+    void shouldFailStalePendingOrdersBeforeArchiving() {
+        // Given
+        when(orderRepository.findArchivableIds(any(), any(), any())).thenReturn(List.of());
+
+        // When
+        orderArchiver.run();
+
+        // Then
+        InOrder inOrder = inOrder(orderRepository);
+        inOrder.verify(orderRepository).findArchivableIds(any(), eq(OrderArchiver.PENDING), any());
+        inOrder.verify(orderRepository).findArchivableIds(any(), eq(OrderArchiver.CLOSED), any());
+        verifyNoInteractions(stockDepletionService);
+    }
+
+    @Test
+    void shouldCreateComingPartitionsThenDropEmptiedOnes() {
+        // Given
+        LocalDate today = LocalDate.now();
+        when(orderRepository.findArchivableIds(any(), any(), any())).thenReturn(List.of());
+
+        // When
+        orderArchiver.run();
+
+        // Then
+        verify(orderRepository).createPartitions(today.withDayOfMonth(1), today.plusMonths(3));
+        verify(orderRepository).dropEmptyPartitions(any());
+    }
+
+    @Test
+    void shouldResumeOnNextRunWhenDatabaseFails() {
+        // Given
+        when(orderRepository.createPartitions(any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection refused"));
+
+        // Then
+        assertDoesNotThrow(() -> orderArchiver.run());
+        verify(orderRepository, never()).findArchivableIds(any(), any(), any());
+    }
+}
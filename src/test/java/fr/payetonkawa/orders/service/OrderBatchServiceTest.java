@@ -0,0 +1,177 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderBatchProperties;
+import fr.payetonkawa.orders.dto.OrderBatchResultDto;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.OrderCreatedBatch;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrderBatchServiceTest {
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderEventOutbox orderEventOutbox;
+    @Mock
+    private ClientOrdersCache clientOrdersCache;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private ClientOrderStatsService clientOrderStatsService;
+
+    private final AtomicLong ids = new AtomicLong();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        lenient().doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+        lenient().when(orderRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Order> orders = invocation.getArgument(0);
+            orders.forEach(order -> {
+                order.setId(ids.incrementAndGet());
+                order.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+                order.setStatus("PENDING");
+            });
+            return orders;
+        });
+    }
+
+    @Test
+    void shouldSaveValidOrdersInChunksAndRejectInvalidOnes() {
+        // Given
+        OrderBatchService service = service(2, false);
+        OrderDto missingItems = new OrderDto();
+        missingItems.setClientId("client-x");
+        List<OrderDto> orders = List.of(order("client-1"), missingItems, order("client-2"), order("client-1"));
+
+        // When
+        List<OrderBatchResultDto> results = service.create(orders);
+
+        // Then
+        assertEquals(4, results.size());
+        assertEquals(List.of("CREATED", "REJECTED", "CREATED", "CREATED"),
+                results.stream().map(OrderBatchResultDto::getResult).toList());
+        assertEquals(1, results.get(1).getIndex());
+        assertNotNull(results.get(1).getError());
+        assertNotNull(results.get(3).getOrder().getId());
+        verify(transactionTemplate, times(2)).executeWithoutResult(any());
+        verify(orderEventOutbox, times(3)).enqueue(eq("order.created"), any());
+        verify(clientOrderStatsService, times(2)).apply(any());
+    }
+
+    @Test
+    void shouldEnqueueOneGroupedEventPerChunk() {
+        // Given
+        OrderBatchService service = service(10, true);
+
+        // When
+        service.create(List.of(order("client-1"), order("client-2"), order("client-3")));
+
+        // Then
+        ArgumentCaptor<ExchangeMessage> message = ArgumentCaptor.forClass(ExchangeMessage.class);
+        verify(orderEventOutbox).enqueue(eq(OrderBatchService.BATCH_ROUTING_KEY), message.capture());
+        assertEquals(3, ((OrderCreatedBatch) message.getValue().getPayload()).orders().size());
+        verify(orderEventOutbox, never()).enqueue(eq("order.created"), any());
+    }
+
+    @Test
+    void shouldReportFailedChunkAndKeepGoing() {
+        // Given
+        OrderBatchService service = service(1, false);
+        doThrow(new DataIntegrityViolationException("boom")).doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        // When
+        List<OrderBatchResultDto> results = service.create(List.of(order("client-1"), order("client-2")));
+
+        // Then
+        assertEquals("FAILED", results.get(0).getResult());
+        assertEquals("CREATED", results.get(1).getResult());
+        // only the saved order counts in the lines per order
+        assertEquals(1, meterRegistry.get("orders.items").summary().count());
+    }
+
+    @Test
+    void shouldReportChunkFailingOnAnyErrorAfterEarlierChunksCommitted() {
+        // Given
+        OrderBatchService service = service(1, false);
+        doAnswer(invocation -> {
+            invocation.<Consumer<Object>>getArgument(0).accept(null);
+            return null;
+        }).doThrow(new ArithmeticException("long overflow")).when(transactionTemplate).executeWithoutResult(any());
+
+        // When
+        List<OrderBatchResultDto> results = service.create(List.of(order("client-1"), order("client-2")));
+
+        // Then
+        assertEquals(List.of("CREATED", "FAILED"), results.stream().map(OrderBatchResultDto::getResult).toList());
+    }
+
+    @Test
+    void shouldRejectOversizedBatch() {
+        // Given
+        OrderBatchService service = service(10, false);
+        List<OrderDto> orders = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            orders.add(order("client-" + i));
+        }
+
+        // Then
+        assertThrows(IllegalArgumentException.class, () -> service.create(orders));
+        verifyNoInteractions(orderRepository);
+    }
+
+    @Test
+    void shouldThrowWhenBatchIsEmpty() {
+        assertThrows(MissingDataException.class, () -> service(10, false).create(List.of()));
+    }
+
+    private OrderBatchService service(int chunkSize, boolean groupedEvent) {
+        return new OrderBatchService(orderRepository, orderEventOutbox, clientOrdersCache, clientOrderStatsService,
+                transactionTemplate,
+                new OrderBatchProperties(5, chunkSize, groupedEvent), new OrderMetrics(meterRegistry));
+    }
+
+    private static OrderDto order(String clientId) {
+        OrderItemDto item = new OrderItemDto();
+        item.setItemId("item-1");
+        item.setQuantity(2);
+        item.setUnitPriceMinor(500L);
+        OrderDto order = new OrderDto();
+        order.setClientId(clientId);
+        order.setItems(List.of(item));
+        return order;
+    }
+}
@@ -0,0 +1,102 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * With IDENTITY ids every row needed its own INSERT round-trip (201 statements for a 200-line order).
+ * Pooled sequences let Hibernate batch the lines, this pins the statement count and logs insert throughput.
+ */
+@Slf4j
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, OrderMetrics.class, SimpleMeterRegistry.class})
+@EnableConfigurationProperties(OrderEventProperties.class)
+class OrderInsertBatchingTest {
+
+    private static final int LINES = 200;
+    private static final int ORDERS = 20;
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private TestEntityManager testEntityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private OrderEventOutbox orderEventOutbox;
+    @MockitoBean
+    private ClientOrdersCache clientOrdersCache;
+    @MockitoBean
+    private ClientOrderStatsService clientOrderStatsService;
+
+    @Test
+    void createShouldBatchOrderLines() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        orderService.create(buildOrder(LINES));
+        testEntityManager.flush();
+
+        // 1 order insert + 200 line inserts in batches of 50 + a few sequence calls, instead of 201 statements
+        long statements = statistics.getPrepareStatementCount();
+        assertTrue(statements < 20, "Expected batched inserts, got " + statements + " statements");
+    }
+
+    @Test
+    void createThroughput() {
+        orderService.create(buildOrder(LINES)); // warm-up
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        long start = System.nanoTime();
+        for (int i = 0; i < ORDERS; i++) {
+            orderService.create(buildOrder(LINES));
+            testEntityManager.flush();
+            testEntityManager.clear();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        log.info("Inserted {} orders x {} lines in {} s ({} rows/s)",
+                ORDERS, LINES, String.format("%.3f", seconds), Math.round(ORDERS * (LINES + 1) / seconds));
+        assertTrue(seconds > 0);
+    }
+
+    private static OrderDto buildOrder(int lines) {
+        List<OrderItemDto> items = new ArrayList<>(lines);
+        for (int i = 0; i < lines; i++) {
+            OrderItemDto item = new OrderItemDto();
+            item.setItemId("item-" + i);
+            item.setQuantity(1);
+            item.setUnitPriceMinor(100L);
+            items.add(item);
+        }
+        OrderDto order = new OrderDto();
+        order.setClientId("client-batch");
+        order.setItems(items);
+        return order;
+    }
+}
@@ -0,0 +1,40 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.exception.StatusTransitionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OrderMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final OrderMetrics orderMetrics = new OrderMetrics(meterRegistry);
+
+    @Test
+    void shouldTagEachCallWithItsOutcome() {
+        assertEquals("ok", orderMetrics.time("update", () -> "ok"));
+        assertThrows(MissingDataException.class, () -> orderMetrics.time("update", () -> {
+            throw new MissingDataException("Order not found");
+        }));
+        assertThrows(IllegalStateException.class, () -> orderMetrics.time("update", () -> {
+            throw new IllegalStateException("boom");
+        }));
+
+        assertEquals(1, count("update", OrderMetrics.SUCCESS));
+        assertEquals(1, count("update", OrderMetrics.REJECTED));
+        assertEquals(1, count("update", OrderMetrics.ERROR));
+    }
+
+    @Test
+    void shouldReportLostRacesAndForbiddenTransitionsAsConflicts() {
+        assertEquals(OrderMetrics.CONFLICT, OrderMetrics.outcome(new StatusTransitionException("FAILED", "CANCELLED")));
+        assertEquals(OrderMetrics.CONFLICT, OrderMetrics.outcome(new ObjectOptimisticLockingFailureException("Order", 1L)));
+    }
+
+    private long count(String operation, String outcome) {
+        return meterRegistry.get("orders.service").tags("operation", operation, "outcome", outcome).timer().count();
+    }
+}
@@ -0,0 +1,125 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+/**
+ * Two updates of the same order's lines racing each other. Each runs in its own committed transaction, so the
+ * test itself is not transactional.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop"
+})
+@Import({OrderService.class, OrderMetrics.class, SimpleMeterRegistry.class})
+@EnableConfigurationProperties(OrderEventProperties.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderServiceConcurrentUpdateTest {
+
+    private static final String CLIENT_ID = "client-race";
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @MockitoBean
+    private OrderEventOutbox orderEventOutbox;
+    @MockitoBean
+    private ClientOrdersCache clientOrdersCache;
+    @MockitoBean
+    private ClientOrderStatsService clientOrderStatsService;
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void shouldReplayItemOnlyUpdateThatLostTheRace() {
+        // Given: item-a x2 at 350, 700 in total
+        Order order = new Order();
+        order.setClientId(CLIENT_ID);
+        order.setItems(List.of(item("item-a", 2)));
+        Long orderId = orderRepository.save(order).getId();
+        long initialVersion = orderRepository.findById(orderId).orElseThrow().getVersion();
+
+        TransactionTemplate concurrent = new TransactionTemplate(transactionManager);
+        concurrent.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        AtomicBoolean raced = new AtomicBoolean();
+        List<Long> committedAmounts = new ArrayList<>();
+        doAnswer(invocation -> {
+            ClientOrderStatsChanges changes = invocation.getArgument(0);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    changes.deltas().forEach(delta -> committedAmounts.add(delta.amount()));
+                }
+            });
+            // the first attempt is still in flight when another update of the lines commits
+            if (raced.compareAndSet(false, true)) {
+                concurrent.executeWithoutResult(status -> orderService.update(orderId, request(4)));
+            }
+            return null;
+        }).when(clientOrderStatsService).apply(any());
+
+        // When
+        orderService.update(orderId, request(3));
+
+        // Then
+        Order updated = orderRepository.findWithItemsById(orderId).orElseThrow();
+        assertEquals(3, updated.getItems().get(0).getQuantity());
+        assertEquals(initialVersion + 2, (long) updated.getVersion());
+        // 700 -> 1400 -> 1050: the stale attempt rolled back and the replay started from the committed lines
+        assertEquals(List.of(700L, -350L), committedAmounts);
+    }
+
+    private static OrderDto request(int quantity) {
+        OrderItemDto item = new OrderItemDto();
+        item.setItemId("item-a");
+        item.setQuantity(quantity);
+        item.setUnitPriceMinor(350L);
+        OrderDto request = new OrderDto();
+        request.setClientId(CLIENT_ID);
+        request.setItems(List.of(item));
+        return request;
+    }
+
+    private static OrderItem item(String itemId, int quantity) {
+        OrderItem item = new OrderItem();
+        item.setItemId(itemId);
+        item.setQuantity(quantity);
+        item.setUnitPriceMinor(350);
+        return item;
+    }
+}
@@ -0,0 +1,190 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.dto.OrderDto;
+import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.entity.OrderItem;
+import fr.payetonkawa.orders.entity.OrderStatus;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Guards the number of SQL statements issued per endpoint now that items are loaded explicitly.
+ */
+@DataJpaTest(properties = {
+        "spring.flyway.enabled=false",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+@Import({OrderService.class, OrderMetrics.class, SimpleMeterRegistry.class})
+@EnableConfigurationProperties(OrderEventProperties.class)
+class OrderServiceQueryCountTest {
+
+    private static final String CLIENT_ID = "client-stats";
+
+    @Autowired
+    private OrderService orderService;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private TestEntityManager testEntityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @MockitoBean
+    private OrderEventOutbox orderEventOutbox;
+    @MockitoBean
+    private ClientOrdersCache clientOrdersCache;
+    @MockitoBean
+    private ClientOrderStatsService clientOrderStatsService;
+
+    private Statistics statistics;
+    private final List<Long> orderIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        orderIds.clear();
+        for (int i = 0; i < 5; i++) {
+            Order order = new Order();
+            order.setClientId(CLIENT_ID);
+            order.setItems(List.of(buildItem("item-a"), buildItem("item-b"), buildItem("item-c")));
+            orderIds.add(testEntityManager.persist(order).getId());
+        }
+        testEntityManager.flush();
+        testEntityManager.clear();
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    @Test
+    void getByClientIdShouldLoadOrdersThenBatchFetchItems() {
+        assertEquals(5, orderService.getByClientId(CLIENT_ID).size());
+
+        // one select for the orders, one IN (...) batch for all their items
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void getPageByClientIdShouldLoadPageThenBatchFetchItems() {
+        assertEquals(3, orderService.getPageByClientId(CLIENT_ID, null, 3).getOrders().size());
+
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void streamByClientIdShouldBatchFetchItemsPerChunk() {
+        List<Long> streamed = new ArrayList<>();
+
+        orderService.streamByClientId(CLIENT_ID, dto -> streamed.add(dto.getId()));
+
+        assertEquals(5, streamed.size());
+        assertEquals(2, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void findWithItemsByIdShouldUseSingleJoin() {
+        Order order = orderRepository.findWithItemsById(orderIds.get(0)).orElseThrow();
+
+        assertEquals(3, order.getItems().size());
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    @Test
+    void updateStatusShouldNotLoadTheAggregate() {
+        assertEquals(1, orderRepository.updateStatus(orderIds.get(0), "CONFIRMED", List.of("PENDING")));
+
+        assertEquals(1, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    @Test
+    void updateStatusesShouldApplyWholeBatchInOneStatement() {
+        Map<Long, OrderStatus> changes = new LinkedHashMap<>();
+        changes.put(orderIds.get(0), OrderStatus.CONFIRMED);
+        changes.put(orderIds.get(1), OrderStatus.FAILED);
+        changes.put(orderIds.get(2), OrderStatus.CONFIRMED);
+
+        assertEquals(3, orderRepository.updateStatuses(changes));
+        assertEquals(1, statistics.getPrepareStatementCount());
+
+        testEntityManager.clear();
+        assertEquals("FAILED", orderRepository.findById(orderIds.get(1)).orElseThrow().getStatus());
+        assertEquals("PENDING", orderRepository.findById(orderIds.get(3)).orElseThrow().getStatus());
+    }
+
+    @Test
+    void updateStatusShouldOnlyMoveOrdersInAPredecessorStatus() {
+        orderRepository.updateStatus(orderIds.get(0), "CANCELLED", OrderStatus.CANCELLED.predecessorNames());
+
+        // a stock reply arriving after the cancellation must not resurrect the order
+        assertEquals(0, orderRepository.updateStatus(orderIds.get(0), "CONFIRMED", OrderStatus.CONFIRMED.predecessorNames()));
+        assertEquals(0, orderRepository.updateStatuses(Map.of(orderIds.get(0), OrderStatus.FAILED)));
+
+        testEntityManager.clear();
+        Order order = orderRepository.findById(orderIds.get(0)).orElseThrow();
+        assertEquals("CANCELLED", order.getStatus());
+        assertEquals(1L, order.getVersion());
+    }
+
+    @Test
+    void updateShouldOnlyWriteTheChangedLines() {
+        OrderDto request = new OrderDto();
+        request.setClientId(CLIENT_ID);
+        request.setItems(List.of(itemDto("item-a", 5), itemDto("item-b", 2), itemDto("item-d", 1)));
+
+        orderService.update(orderIds.get(0), request);
+        testEntityManager.flush();
+
+        // item-a quantity changed, item-b untouched, item-c removed, item-d added
+        EntityStatistics items = statistics.getEntityStatistics(OrderItem.class.getName());
+        assertEquals(1, items.getUpdateCount());
+        assertEquals(1, items.getDeleteCount());
+        assertEquals(1, items.getInsertCount());
+    }
+
+    @Test
+    void deleteShouldReadOrderAndItemsOnce() {
+        orderService.delete(orderIds.get(0));
+
+        // the entity graph already loaded the lines that feed the order.deleted payload
+        assertEquals(1, statistics.getPrepareStatementCount());
+    }
+
+    private static OrderItemDto itemDto(String itemId, int quantity) {
+        OrderItemDto item = new OrderItemDto();
+        item.setItemId(itemId);
+        item.setQuantity(quantity);
+        item.setUnitPriceMinor(350L);
+        return item;
+    }
+
+    private static OrderItem buildItem(String itemId) {
+        OrderItem item = new OrderItem();
+        item.setItemId(itemId);
+        item.setQuantity(2);
+        item.setUnitPriceMinor(350);
+        return item;
+    }
+}
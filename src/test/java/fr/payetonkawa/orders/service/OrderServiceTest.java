@@ -1,25 +1,45 @@
 package fr.payetonkawa.orders.service;
 
+import fr.payetonkawa.orders.config.OrderEventProperties;
+import fr.payetonkawa.orders.dto.OrderCursor;
 import fr.payetonkawa.orders.dto.OrderDto;
 import fr.payetonkawa.orders.dto.OrderItemDto;
+import fr.payetonkawa.orders.dto.OrderPageDto;
 import fr.payetonkawa.orders.entity.Order;
 import fr.payetonkawa.orders.entity.OrderItem;
-import fr.payetonkawa.orders.event.EventPublisher;
+import fr.payetonkawa.orders.event.OrderEventOutbox;
 import fr.payetonkawa.orders.exception.MissingDataException;
+import fr.payetonkawa.orders.exception.StatusTransitionException;
+import fr.payetonkawa.orders.messaging.ExchangeMessage;
+import fr.payetonkawa.orders.messaging.OrderLine;
+import fr.payetonkawa.orders.messaging.OrderUpdated;
+import fr.payetonkawa.orders.repository.ClientOrderStatsDelta;
 import fr.payetonkawa.orders.repository.OrderRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,7 +48,21 @@ class OrderServiceTest {
     @Mock
     private OrderRepository orderRepository;
     @Mock
-    private EventPublisher eventPublisher;
+    private OrderEventOutbox orderEventOutbox;
+    @Mock
+    private ClientOrdersCache clientOrdersCache;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+    @Mock
+    private OrderEventProperties orderEventProperties;
+    @Mock
+    private ClientOrderStatsService clientOrderStatsService;
+    @Mock
+    private EntityManager entityManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    @Spy
+    private OrderMetrics orderMetrics = new OrderMetrics(meterRegistry);
 
     @InjectMocks
     private OrderService orderService;
@@ -37,6 +71,10 @@ class OrderServiceTest {
 
     @BeforeEach
     void setUp() {
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        lenient().when(orderEventProperties.updatedFormat()).thenReturn(OrderEventProperties.UpdatedFormat.FULL);
+
         ORDERS.clear();
 
         ORDERS.add(buildOrder(1L, "1", 3));
@@ -78,6 +116,56 @@ class OrderServiceTest {
         assertTrue(orders.isEmpty(), "Expected empty list for clientId '2'");
     }
 
+    @Test
+    void shouldReturnFirstPageWithCursorWhenMoreOrdersExist() {
+        // Given
+        String clientId = "1";
+        when(orderRepository.findFirstPageByClientId(clientId, Limit.of(3))).thenReturn(ORDERS.subList(0, 3));
+
+        // Test
+        OrderPageDto page = orderService.getPageByClientId(clientId, null, 2);
+
+        // Then
+        assertEquals(2, page.getOrders().size());
+        assertEquals(OrderCursor.of(ORDERS.get(1)).encode(), page.getNextCursor());
+    }
+
+    @Test
+    void shouldReturnLastPageWithoutCursorWhenHistoryExhausted() {
+        // Given
+        String clientId = "1";
+        Order last = ORDERS.get(1);
+        String cursor = OrderCursor.of(last).encode();
+        when(orderRepository.findPageByClientIdAfter(clientId, last.getCreatedAt(), last.getId(), Limit.of(3)))
+                .thenReturn(ORDERS.subList(2, 4));
+
+        // Test
+        OrderPageDto page = orderService.getPageByClientId(clientId, cursor, 2);
+
+        // Then
+        assertEquals(2, page.getOrders().size());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldClampPageSizeWhenLimitTooLarge() {
+        // Given
+        when(orderRepository.findFirstPageByClientId("1", Limit.of(OrderService.MAX_PAGE_SIZE + 1)))
+                .thenReturn(List.of());
+
+        // Test
+        OrderPageDto page = orderService.getPageByClientId("1", null, 10_000);
+
+        // Then
+        assertTrue(page.getOrders().isEmpty());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void shouldThrowExceptionWhenPageCursorInvalid() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.getPageByClientId("1", "%%%", 10));
+    }
+
     @Test
     void shouldCreateOrderSuccessfully() {
         // Given
@@ -86,7 +174,7 @@ class OrderServiceTest {
         OrderItemDto itemDto = new OrderItemDto();
         itemDto.setItemId("item-1");
         itemDto.setQuantity(2);
-        itemDto.setUnitPrice(5.0);
+        itemDto.setUnitPriceMinor(500L);
         orderDto.setItems(List.of(itemDto));
 
         Order savedOrder = buildOrder(10L, "client-1", 1);
@@ -99,6 +187,118 @@ class OrderServiceTest {
         assertNotNull(result);
         assertEquals(savedOrder.getId(), result.getId());
         assertEquals(savedOrder.getClientId(), result.getClientId());
+        verify(orderEventOutbox).enqueue(eq("order.created"), any());
+        verify(clientOrdersCache).evict("client-1");
+        assertEquals(1, meterRegistry.get("orders.service").tags("operation", "create", "outcome", "success").timer().count());
+        assertEquals(1, meterRegistry.get("orders.items").summary().totalAmount());
+    }
+
+    @Test
+    void shouldNotTimeCreateAsSuccessWhenCommitFails() {
+        // Given
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-0");
+        itemDto.setQuantity(1);
+        itemDto.setUnitPriceMinor(500L);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-1");
+        orderDto.setItems(List.of(itemDto));
+        when(transactionTemplate.execute(any())).thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        // Then
+        assertThrows(DataIntegrityViolationException.class, () -> orderService.create(orderDto));
+        assertEquals(1, meterRegistry.get("orders.service").tags("operation", "create", "outcome", "error").timer().count());
+        assertTrue(meterRegistry.find("orders.service").tags("operation", "create", "outcome", "success").timers().isEmpty());
+        assertEquals(0, meterRegistry.get("orders.items").summary().count());
+    }
+
+    @Test
+    void shouldCountCreatedOrderInClientStats() {
+        // Given
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-0");
+        itemDto.setQuantity(1);
+        itemDto.setUnitPriceMinor(1000L);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-1");
+        orderDto.setItems(List.of(itemDto));
+        Order savedOrder = buildOrder(10L, "client-1", 1);
+        when(orderRepository.save(any(Order.class))).thenReturn(savedOrder);
+
+        // When
+        orderService.create(orderDto);
+
+        // Then
+        assertEquals(List.of(new ClientOrderStatsDelta("client-1", "EUR", 1, 0, 0, 0, 1000L, savedOrder.getCreatedAt())),
+                appliedStats());
+    }
+
+    @Test
+    void shouldMoveStatsToNewClientWhenUpdateMovesOrder() {
+        // Given
+        Order existingOrder = buildOrder(1L, "client-1", 1);
+        when(orderRepository.findWithItemsById(1L)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-2");
+        itemDto.setQuantity(3);
+        itemDto.setUnitPriceMinor(700L);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-2");
+        orderDto.setItems(List.of(itemDto));
+
+        // When
+        orderService.update(1L, orderDto);
+
+        // Then
+        assertEquals(List.of(
+                new ClientOrderStatsDelta("client-1", "EUR", -1, 0, 0, 0, -1000, null),
+                new ClientOrderStatsDelta("client-2", "EUR", 1, 0, 0, 0, 2100, existingOrder.getCreatedAt())),
+                appliedStats());
+    }
+
+    @Test
+    void shouldMoveStatsToOtherCurrencyRowWhenUpdateChangesCurrency() {
+        // Given
+        Order existingOrder = buildOrder(1L, "client-1", 1);
+        when(orderRepository.findWithItemsById(1L)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-0");
+        itemDto.setQuantity(1);
+        itemDto.setUnitPriceMinor(1200L);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-1");
+        orderDto.setCurrency("usd");
+        orderDto.setItems(List.of(itemDto));
+
+        // When
+        orderService.update(1L, orderDto);
+
+        // Then
+        assertEquals(List.of(
+                new ClientOrderStatsDelta("client-1", "EUR", -1, 0, 0, 0, -1000, null),
+                new ClientOrderStatsDelta("client-1", "USD", 1, 0, 0, 0, 1200, existingOrder.getCreatedAt())),
+                appliedStats());
+    }
+
+    @Test
+    void shouldMoveCancelledOrderBetweenStatusCounts() {
+        // Given
+        Order existingOrder = buildOrder(1L, "client-1", 1);
+        existingOrder.setStatus("CONFIRMED");
+        when(orderRepository.findWithItemsById(1L)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+        OrderDto cancel = new OrderDto();
+        cancel.setStatus("CANCELLED");
+
+        // When
+        orderService.update(1L, cancel);
+
+        // Then
+        assertEquals(List.of(new ClientOrderStatsDelta("client-1", "EUR", 0, -1, 0, 1, 0L, null)), appliedStats());
     }
 
     @Test
@@ -110,6 +310,7 @@ class OrderServiceTest {
 
         // Then
         assertThrows(MissingDataException.class, () -> orderService.create(orderDto));
+        assertEquals(1, meterRegistry.get("orders.service").tags("operation", "create", "outcome", "rejected").timer().count());
     }
 
     @Test
@@ -117,7 +318,7 @@ class OrderServiceTest {
         // Given
         Long orderId = 1L;
         Order existingOrder = buildOrder(orderId, "client-1", 1);
-        when(orderRepository.findById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
         when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
 
         OrderDto orderDto = new OrderDto();
@@ -125,7 +326,7 @@ class OrderServiceTest {
         OrderItemDto itemDto = new OrderItemDto();
         itemDto.setItemId("item-2");
         itemDto.setQuantity(3);
-        itemDto.setUnitPrice(7.0);
+        itemDto.setUnitPriceMinor(700L);
         orderDto.setItems(List.of(itemDto));
 
         // When
@@ -135,13 +336,177 @@ class OrderServiceTest {
         assertNotNull(result);
         assertEquals(orderId, result.getId());
         assertEquals("client-1", result.getClientId());
+        verify(orderEventOutbox).enqueue(eq("order.updated"), any());
+        assertEquals(1, meterRegistry.get("orders.items").summary().totalAmount());
+    }
+
+    @Test
+    void shouldForceVersionIncrementWhenUpdateOnlyChangesItems() {
+        // Given
+        Long orderId = 1L;
+        Order existingOrder = buildOrder(orderId, "client-1", 1);
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-1");
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-0");
+        itemDto.setQuantity(5);
+        itemDto.setUnitPriceMinor(1000L);
+        orderDto.setItems(List.of(itemDto));
+
+        // When
+        orderService.update(orderId, orderDto);
+
+        // Then
+        verify(entityManager).lock(existingOrder, LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+    }
+
+    @Test
+    void shouldEvictBothClientsWhenUpdateMovesOrder() {
+        // Given
+        Long orderId = 1L;
+        Order existingOrder = buildOrder(orderId, "client-1", 1);
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-2");
+        OrderItemDto itemDto = new OrderItemDto();
+        itemDto.setItemId("item-2");
+        itemDto.setQuantity(3);
+        itemDto.setUnitPriceMinor(700L);
+        orderDto.setItems(List.of(itemDto));
+
+        // When
+        orderService.update(orderId, orderDto);
+
+        // Then
+        verify(clientOrdersCache).evict("client-1");
+        verify(clientOrdersCache).evict("client-2");
+    }
+
+    @Test
+    void shouldReplayUpdateWhenOrderChangedConcurrently() {
+        // Given
+        Long orderId = 1L;
+        Order existingOrder = buildOrder(orderId, "client-1", 1);
+        existingOrder.setStatus("CONFIRMED");
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+        doThrow(new ObjectOptimisticLockingFailureException(Order.class, orderId))
+                .doAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null))
+                .when(transactionTemplate).execute(any());
+
+        OrderDto cancel = new OrderDto();
+        cancel.setStatus("CANCELLED");
+
+        // When
+        OrderDto result = orderService.update(orderId, cancel);
+
+        // Then
+        assertEquals("CANCELLED", result.getStatus());
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(orderEventOutbox).enqueue(eq("order.cancelled"), any());
+        assertEquals(0, meterRegistry.get("orders.items").summary().count());
+    }
+
+    @Test
+    void shouldGiveUpAfterRepeatedConflicts() {
+        // Given
+        doThrow(new ObjectOptimisticLockingFailureException(Order.class, 1L)).when(transactionTemplate).execute(any());
+
+        // Then
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> orderService.update(1L, new OrderDto()));
+        verify(transactionTemplate, times(OrderService.MAX_WRITE_ATTEMPTS)).execute(any());
+    }
+
+    @Test
+    void shouldRejectCancellationOfFailedOrder() {
+        // Given
+        Order failed = buildOrder(1L, "client-1", 1);
+        failed.setStatus("FAILED");
+        when(orderRepository.findWithItemsById(1L)).thenReturn(java.util.Optional.of(failed));
+
+        OrderDto cancel = new OrderDto();
+        cancel.setStatus("CANCELLED");
+
+        // Then
+        assertThrows(StatusTransitionException.class, () -> orderService.update(1L, cancel));
+        verify(orderRepository, never()).save(any());
+        verifyNoInteractions(orderEventOutbox);
+    }
+
+    @Test
+    void shouldMergeItemsByItemId() {
+        // Given: item-0, item-1 and item-2, one of each
+        Order order = buildOrder(1L, "client-1", 3);
+        OrderItem kept = order.getItems().get(1);
+
+        OrderItem changed = buildOrderItem(1);
+        changed.setQuantity(4);
+        OrderItem added = buildOrderItem(3);
+        OrderItem addedAgain = buildOrderItem(3);
+        addedAgain.setQuantity(2);
+
+        // When
+        OrderService.ItemChanges changes =
+                OrderService.mergeItems(order, new ArrayList<>(List.of(changed, added, addedAgain)));
+
+        // Then
+        assertEquals(3, changes.previousItems().size());
+        assertEquals(new OrderLine("item-1", 1), changes.previousItems().get(1));
+        assertEquals(Map.of("item-0", -1, "item-1", 3, "item-2", -1, "item-3", 3), changes.quantityDeltas());
+        assertEquals(2, order.getItems().size());
+        assertSame(kept, order.getItems().get(0), "Kept line should be updated in place");
+        assertEquals(4, kept.getQuantity());
+        OrderItem inserted = order.getItems().get(1);
+        assertEquals("item-3", inserted.getItemId());
+        assertEquals(3, inserted.getQuantity());
+        assertNull(inserted.getId());
+        assertSame(order, inserted.getOrder());
+    }
+
+    @Test
+    void shouldPublishOnlyQuantityDeltasWhenDeltaFormatEnabled() {
+        // Given
+        Long orderId = 1L;
+        Order existingOrder = buildOrder(orderId, "client-1", 2);
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.save(any(Order.class))).thenReturn(existingOrder);
+        when(orderEventProperties.updatedFormat()).thenReturn(OrderEventProperties.UpdatedFormat.DELTA);
+
+        OrderItemDto kept = new OrderItemDto();
+        kept.setItemId("item-0");
+        kept.setQuantity(1);
+        kept.setUnitPriceMinor(1000L);
+        OrderItemDto changed = new OrderItemDto();
+        changed.setItemId("item-1");
+        changed.setQuantity(5);
+        changed.setUnitPriceMinor(1100L);
+        OrderDto orderDto = new OrderDto();
+        orderDto.setClientId("client-1");
+        orderDto.setItems(List.of(kept, changed));
+
+        // When
+        orderService.update(orderId, orderDto);
+
+        // Then
+        ArgumentCaptor<ExchangeMessage> message = ArgumentCaptor.forClass(ExchangeMessage.class);
+        verify(orderEventOutbox).enqueue(eq("order.updated"), message.capture());
+        OrderUpdated payload = (OrderUpdated) message.getValue().getPayload();
+        assertEquals("delta", payload.format());
+        assertEquals(List.of(new OrderUpdated.ItemDelta("item-1", 4)), payload.changes());
+        assertNull(payload.previousItems());
+        assertNull(payload.items());
     }
 
     @Test
     void shouldThrowExceptionWhenUpdateOrderNotFound() {
         // Given
         Long orderId = 99L;
-        when(orderRepository.findById(orderId)).thenReturn(java.util.Optional.empty());
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.empty());
 
         OrderDto orderDto = new OrderDto();
         orderDto.setClientId("client-1");
@@ -156,7 +521,7 @@ class OrderServiceTest {
         // Given
         Long orderId = 1L;
         Order existingOrder = buildOrder(orderId, "client-1", 1);
-        when(orderRepository.findById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
 
         OrderDto orderDto = new OrderDto();
         orderDto.setClientId(null);
@@ -186,7 +551,7 @@ class OrderServiceTest {
         OrderItemDto itemDto = new OrderItemDto();
         itemDto.setItemId("item-1");
         itemDto.setQuantity(2);
-        itemDto.setUnitPrice(5.0);
+        itemDto.setUnitPriceMinor(500L);
         orderDto.setItems(List.of(itemDto));
 
         // Then
@@ -209,14 +574,14 @@ class OrderServiceTest {
         // Given
         Long orderId = 1L;
         Order existingOrder = buildOrder(orderId, "client-1", 1);
-        when(orderRepository.findById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
 
         OrderDto orderDto = new OrderDto();
         orderDto.setClientId(null);
         OrderItemDto itemDto = new OrderItemDto();
         itemDto.setItemId("item-1");
         itemDto.setQuantity(2);
-        itemDto.setUnitPrice(5.0);
+        itemDto.setUnitPriceMinor(500L);
         orderDto.setItems(List.of(itemDto));
 
         // Then
@@ -228,7 +593,7 @@ class OrderServiceTest {
         // Given
         Long orderId = 1L;
         Order existingOrder = buildOrder(orderId, "client-1", 1);
-        when(orderRepository.findById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(existingOrder));
 
         OrderDto orderDto = new OrderDto();
         orderDto.setClientId("client-1");
@@ -246,6 +611,31 @@ class OrderServiceTest {
         // When & Then
         assertDoesNotThrow(() -> orderService.delete(nonExistentOrderId));
         verify(orderRepository, times(1)).deleteById(nonExistentOrderId);
+        verifyNoInteractions(orderEventOutbox);
+        verifyNoInteractions(clientOrdersCache);
+    }
+
+    @Test
+    void shouldEnqueueDeletedEventWhenDeletingExistingOrder() {
+        // Given
+        Long orderId = 1L;
+        when(orderRepository.findWithItemsById(orderId)).thenReturn(java.util.Optional.of(buildOrder(orderId, "client-1", 2)));
+
+        // When
+        orderService.delete(orderId);
+
+        // Then
+        verify(orderRepository).deleteById(orderId);
+        verify(orderEventOutbox).enqueue(eq("order.deleted"), any());
+        verify(clientOrdersCache).evict("client-1");
+        // item-0 and item-1, one of each at 10 and 11
+        assertEquals(List.of(new ClientOrderStatsDelta("client-1", "EUR", -1, 0, 0, 0, -2100, null)), appliedStats());
+    }
+
+    private List<ClientOrderStatsDelta> appliedStats() {
+        ArgumentCaptor<ClientOrderStatsChanges> changes = ArgumentCaptor.forClass(ClientOrderStatsChanges.class);
+        verify(clientOrderStatsService).apply(changes.capture());
+        return changes.getValue().deltas();
     }
 
     private static Order buildOrder(Long id, String clientId, int numbersOfItems) {
@@ -253,6 +643,7 @@ class OrderServiceTest {
         order.setId(id);
         order.setClientId(clientId);
         order.setCreatedAt(new Timestamp(System.currentTimeMillis()));
+        order.setStatus("PENDING");
 
         List<OrderItem> items = new ArrayList<>();
         for (int i = 0; i < numbersOfItems; i++) {
@@ -268,7 +659,7 @@ class OrderServiceTest {
         item.setId((long) index);
         item.setItemId("item-" + index);
         item.setQuantity(1);
-        item.setUnitPrice(10.0 + index); // Example price
+        item.setUnitPriceMinor(1000 + 100L * index); // Example price
         return item;
     }
 
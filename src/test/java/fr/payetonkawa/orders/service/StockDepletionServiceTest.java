@@ -0,0 +1,97 @@
+package fr.payetonkawa.orders.service;
+
+import fr.payetonkawa.orders.config.StockDepletionProperties;
+import fr.payetonkawa.orders.entity.Order;
+import fr.payetonkawa.orders.repository.OrderItemRepository;
+import fr.payetonkawa.orders.repository.OrderRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StockDepletionServiceTest {
+
+    private static final List<String> PENDING = List.of("PENDING");
+
+    @Mock
+    private OrderRepository orderRepository;
+    @Mock
+    private OrderItemRepository orderItemRepository;
+    @Mock
+    private ClientOrdersCache clientOrdersCache;
+    @Mock
+    private ClientOrderStatsService clientOrderStatsService;
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private StockDepletionService stockDepletionService;
+
+    @BeforeEach
+    void setUp() {
+        stockDepletionService = new StockDepletionService(orderRepository, orderItemRepository, clientOrdersCache,
+                clientOrderStatsService, transactionTemplate, new StockDepletionProperties(2));
+        lenient().when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+    }
+
+    @Test
+    void shouldFailPendingOrdersChunkByChunkAfterTheLastId() {
+        // Given
+        when(orderItemRepository.findOrderIdsByItemIdAfter("item-1", "PENDING", 0L, Limit.of(2)))
+                .thenReturn(List.of(3L, 5L));
+        when(orderItemRepository.findOrderIdsByItemIdAfter("item-1", "PENDING", 5L, Limit.of(2)))
+                .thenReturn(List.of(8L));
+        when(orderRepository.findAndLockByIdIn(List.of(3L, 5L)))
+                .thenReturn(List.of(order(3L, "client-1", "PENDING"), order(5L, "client-1", "PENDING")));
+        // confirmed since the chunk was read
+        when(orderRepository.findAndLockByIdIn(List.of(8L))).thenReturn(List.of(order(8L, "client-2", "CONFIRMED")));
+        when(orderRepository.updateStatusWhereIdIn(List.of(3L, 5L), "FAILED", PENDING)).thenReturn(2);
+
+        // When
+        int failed = stockDepletionService.failPendingOrders("item-1");
+
+        // Then
+        assertEquals(2, failed);
+        verify(transactionTemplate, times(2)).execute(any());
+        verify(clientOrdersCache).evictAll(Set.of("client-1"));
+        verify(clientOrderStatsService).apply(any());
+        verify(orderRepository, never()).updateStatusWhereIdIn(eq(List.of(8L)), any(), any());
+        // a short chunk is the last one
+        verify(orderItemRepository, times(2)).findOrderIdsByItemIdAfter(any(), any(), anyLong(), any());
+    }
+
+    @Test
+    void shouldStopWhenNoPendingOrderHoldsTheItem() {
+        // Given
+        when(orderItemRepository.findOrderIdsByItemIdAfter("item-2", "PENDING", 0L, Limit.of(2)))
+                .thenReturn(List.of());
+
+        // When
+        int failed = stockDepletionService.failPendingOrders("item-2");
+
+        // Then
+        assertEquals(0, failed);
+        verifyNoInteractions(transactionTemplate, orderRepository, clientOrdersCache, clientOrderStatsService);
+    }
+
+    private static Order order(long id, String clientId, String status) {
+        Order order = new Order();
+        order.setId(id);
+        order.setClientId(clientId);
+        order.setStatus(status);
+        return order;
+    }
+}